@@ -0,0 +1,49 @@
+package nl.hhs.poker;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Dealing the cards for one game, 2 per player and 5 community cards, from a
+ * new Deck and from a reused Deck.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DeckBenchmark {
+
+    @Param({"2", "6", "10"})
+    public int players;
+    private final Deck deck = new Deck();
+
+    @Benchmark
+    public long newDeck() {
+        return deal(new Deck());
+    }
+
+    @Benchmark
+    public long reusedDeck() {
+        deck.reset();
+        return deal(deck);
+    }
+
+    private long deal(Deck deck) {
+        long mask = 0;
+        for (int i = 2 * players + 5; i > 0; i--) {
+            mask |= Card.mask(deck.dealCardIndex());
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,73 @@
+package nl.hhs.poker;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A round of bidding and a complete game with showdown, at tables of
+ * CallBots or RandomBots (with one CallBot, so not everybody folds).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameBenchmark {
+
+    @Param({"2", "6", "10"})
+    public int players;
+    @Param({"CallBot", "RandomBot"})
+    public String bot;
+    private ArrayList<Player> table;
+
+    @Setup
+    public void setup() {
+        table = table();
+    }
+
+    private ArrayList<Player> table() {
+        ArrayList<Player> table = new ArrayList();
+        table.add(new CallBot());
+        for (int i = 1; i < players; i++) {
+            table.add(bot.equals("CallBot") ? new CallBot() : new RandomBot());
+        }
+        return table;
+    }
+
+    /**
+     * Deals a game and runs the first round of bidding. No chips change
+     * hands, so the same players are used for every game.
+     */
+    @Benchmark
+    public Game bidUntilNoRaise() {
+        Game game = new Game(table);
+        game.bidUntilNoRaise();
+        return game;
+    }
+
+    /**
+     * Plays a game to the showdown and settles the pot, splitting it when
+     * hands tie. Every game has new players, so no one runs out of chips.
+     */
+    @Benchmark
+    public Game getShowDown() {
+        Game game = new Game(table());
+        game.bidUntilNoRaise();
+        game.dealCommunityCards(5);
+        game.bidUntilNoRaise();
+        game.getShowDown();
+        return game;
+    }
+}
@@ -0,0 +1,81 @@
+package nl.hhs.poker;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Construction and comparison of ComparableHands, and the HandEvaluator they
+ * use, over a fixed set of random 7 card hands.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HandBenchmark {
+
+    private static final int GAMES = 512;
+    private final Game games[] = new Game[2 * GAMES];
+    private final Hand hands[] = new Hand[2 * GAMES];
+    private final ComparableHand comparable[] = new ComparableHand[2 * GAMES];
+    private final long masks[] = new long[2 * GAMES];
+    private int next;
+
+    @Setup
+    public void setup() {
+        for (int g = 0; g < GAMES; g++) {
+            ArrayList<Player> players = new ArrayList();
+            players.add(new CallBot());
+            players.add(new CallBot());
+            Game game = new Game(players);
+            game.dealCommunityCards(5);
+            game.bidUntilNoRaise();
+            game.getShowDown(); // so the players show their hands
+            for (int p = 0; p < 2; p++) {
+                int i = 2 * g + p;
+                games[i] = game;
+                hands[i] = players.get(p).giveHand();
+                comparable[i] = new ComparableHand(game, hands[i]);
+                masks[i] = comparable[i].getMask();
+            }
+        }
+        // visit the hands in random order, so branches are not predictable
+        Random random = new Random(1);
+        for (int i = masks.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long m = masks[i];
+            masks[i] = masks[j];
+            masks[j] = m;
+        }
+    }
+
+    @Benchmark
+    public ComparableHand construct() {
+        int i = next++ & (2 * GAMES - 1);
+        return new ComparableHand(games[i], hands[i]);
+    }
+
+    @Benchmark
+    public int compareTo() {
+        // hands of the same game are next to each other
+        int i = next++ & (2 * GAMES - 1);
+        return comparable[i].compareTo(comparable[i ^ 1]);
+    }
+
+    @Benchmark
+    public int evaluate() {
+        return HandEvaluator.evaluate(masks[next++ & (2 * GAMES - 1)]);
+    }
+}
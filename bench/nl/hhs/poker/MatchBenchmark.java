@@ -0,0 +1,45 @@
+package nl.hhs.poker;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A complete Match of one CallBot against RandomBots, until one player is
+ * left.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MatchBenchmark {
+
+    @Param({"2", "6", "10"})
+    public int players;
+
+    @Benchmark
+    public Match match() {
+        ArrayList<Player> table = new ArrayList();
+        table.add(new CallBot());
+        for (int i = 1; i < players; i++) {
+            table.add(new RandomBot());
+        }
+        Match match = new Match(table);
+        while (match.getPlayersLeftInMatch().size() > 1) {
+            match.playGame();
+            match.moveDealer();
+        }
+        return match;
+    }
+}
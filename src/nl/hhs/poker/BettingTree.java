@@ -0,0 +1,226 @@
+package nl.hhs.poker;
+
+import java.util.Arrays;
+
+/**
+ * The abstract betting of a heads-up Game: a tree of every sequence of
+ * actions a {@link CfrSolver} trains on. It follows the rules of
+ * {@link Game#bidUntilNoRaise()} for two players: seat 0 is the small blind
+ * and acts first before the flop, a street ends when both players acted and
+ * their bids are equal, and the next street starts with the player that did
+ * not act last. Both players start with the same stack, and a raise is one
+ * of a few sizes, fractions of the pot after calling, or all-in, at most
+ * maxRaises times per street. A game with other stacks can only be mapped
+ * onto the tree, see {@link CfrBot}.
+ * <p/>
+ * The nodes are kept in primitive arrays, the children of a node have
+ * consecutive numbers, so action a of node n leads to node first(n) + a. A
+ * decision node has a place in the tables of the solver: the entries of
+ * bucket b, one per action, start at offset(n) + b * actions(n).
+ */
+final class BettingTree {
+
+    static final int STREETS = 4; // preflop, flop, turn, river
+    static final int RIVER = 3;
+    static final int ROOT = 0;
+    // kinds of node
+    static final int DECISION = 0;
+    static final int FOLDED = 1; // the player of the node folded
+    static final int SHOWDOWN = 2;
+    // kinds of action
+    static final int FOLD = 0;
+    static final int CALL = 1; // or pass
+    static final int RAISE = 2;
+    static final int ALLIN = 3;
+    final int stack;
+    final int blind; // the small blind, the big blind is twice as much
+    private final float sizes[];
+    private final int maxRaises;
+    private final int buckets[]; // per street
+    final int maxActions;
+    private int maxDepth;
+    private int nodes;
+    private byte kind[] = new byte[1024];
+    private byte player[] = new byte[1024];
+    private byte street[] = new byte[1024];
+    private byte move[] = new byte[1024]; // the action that leads to the node
+    private int bid[] = new int[2 * 1024]; // per player
+    private int first[] = new int[1024];
+    private byte actions[] = new byte[1024];
+    private long offset[];
+    private long entries;
+
+    /**
+     * @param stack chips of each player at the start of the game
+     * @param blind the small blind, see {@link Game#getBlindAmount()}
+     * @param sizes raises as fractions of the pot after calling
+     * @param maxRaises raises per street, all-in included
+     * @param buckets number of card buckets per street
+     */
+    BettingTree(int stack, int blind, float sizes[], int maxRaises, int buckets[]) {
+        if (blind < 1 || stack <= 2 * blind || maxRaises < 1) {
+            throw new IllegalArgumentException("A stack of " + stack + " must be over two blinds of " + blind
+                    + " and at least one raise must be allowed");
+        }
+        this.stack = stack;
+        this.blind = blind;
+        this.sizes = sizes.clone();
+        Arrays.sort(this.sizes);
+        this.maxRaises = maxRaises;
+        this.buckets = buckets.clone();
+        maxActions = sizes.length + 3;
+        add(DECISION, 0, 0, blind, 2 * blind, CALL);
+        expand(ROOT, 0, 0, 1);
+        offset = new long[nodes];
+        for (int node = 0; node < nodes; node++) {
+            if (kind[node] == DECISION) {
+                offset[node] = entries;
+                entries += (long) buckets[street[node]] * actions[node];
+            }
+        }
+    }
+
+    private int add(int k, int p, int s, int bid0, int bid1, int m) {
+        if (nodes == kind.length) {
+            int size = 2 * nodes;
+            kind = Arrays.copyOf(kind, size);
+            player = Arrays.copyOf(player, size);
+            street = Arrays.copyOf(street, size);
+            move = Arrays.copyOf(move, size);
+            bid = Arrays.copyOf(bid, 2 * size);
+            first = Arrays.copyOf(first, size);
+            actions = Arrays.copyOf(actions, size);
+        }
+        kind[nodes] = (byte) k;
+        player[nodes] = (byte) p;
+        street[nodes] = (byte) s;
+        move[nodes] = (byte) m;
+        bid[2 * nodes] = bid0;
+        bid[2 * nodes + 1] = bid1;
+        return nodes++;
+    }
+
+    /**
+     * Adds the children of a decision node, then expands them.
+     *
+     * @param acted the number of actions on this street before this node
+     * @param raises the number of raises on this street before this node
+     */
+    private void expand(int node, int acted, int raises, int depth) {
+        maxDepth = Math.max(maxDepth, depth);
+        int p = player[node];
+        int s = street[node];
+        int mine = bid[2 * node + p];
+        int theirs = bid[2 * node + 1 - p];
+        int moves[] = new int[maxActions];
+        int to[] = new int[maxActions];
+        int n = 0;
+        if (mine < theirs) {
+            moves[n] = FOLD;
+            to[n++] = mine;
+        }
+        moves[n] = CALL;
+        to[n++] = theirs;
+        if (raises < maxRaises && theirs < stack) {
+            for (float size : sizes) {
+                int amount = theirs + Math.round(size * 2 * theirs);
+                if (amount > to[n - 1] && amount < stack) {
+                    moves[n] = RAISE;
+                    to[n++] = amount;
+                }
+            }
+            moves[n] = ALLIN;
+            to[n++] = stack;
+        }
+        int children = nodes;
+        first[node] = children;
+        actions[node] = (byte) n;
+        for (int a = 0; a < n; a++) {
+            int bid0 = p == 0 ? to[a] : theirs;
+            int bid1 = p == 0 ? theirs : to[a];
+            if (moves[a] == FOLD) {
+                add(FOLDED, p, s, bid0, bid1, FOLD);
+            } else if (moves[a] == CALL && acted > 0) {
+                // both acted and the bids are equal, the street is over
+                if (s == RIVER || theirs == stack) {
+                    add(SHOWDOWN, p, s, bid0, bid1, CALL);
+                } else {
+                    add(DECISION, 1 - p, s + 1, bid0, bid1, CALL);
+                }
+            } else {
+                add(DECISION, 1 - p, s, bid0, bid1, moves[a]);
+            }
+        }
+        for (int a = 0; a < n; a++) {
+            int child = children + a;
+            if (kind[child] == DECISION) {
+                boolean next = street[child] != s;
+                expand(child, next ? 0 : acted + 1, next ? 0 : moves[a] >= RAISE ? raises + 1 : raises, depth + 1);
+            }
+        }
+    }
+
+    int nodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the number of decisions on the longest path from the root
+     */
+    int maxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return the number of entries of a table over all decision nodes and
+     * buckets
+     */
+    long entries() {
+        return entries;
+    }
+
+    int buckets(int s) {
+        return buckets[s];
+    }
+
+    int kind(int node) {
+        return kind[node];
+    }
+
+    /**
+     * @return the player that acts at a decision node, or that folded
+     */
+    int player(int node) {
+        return player[node];
+    }
+
+    int street(int node) {
+        return street[node];
+    }
+
+    /**
+     * @return the kind of action that leads to the node
+     */
+    int move(int node) {
+        return move[node];
+    }
+
+    /**
+     * @return the total amount the player put in at the node
+     */
+    int bid(int node, int p) {
+        return bid[2 * node + p];
+    }
+
+    int first(int node) {
+        return first[node];
+    }
+
+    int actions(int node) {
+        return actions[node];
+    }
+
+    long offset(int node) {
+        return offset[node];
+    }
+}
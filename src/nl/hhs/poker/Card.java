@@ -1,13 +1,100 @@
 package nl.hhs.poker;
 
+/**
+ * A playing card. Internally every card is identified by an index 0-51
+ * (suit * 13 + face), and a set of cards is represented as a 52-bit mask in a
+ * long with bit 1L &lt;&lt; index set for each card. Because of this layout, the
+ * 13 faces of a suit occupy a consecutive range of bits in a card mask, which
+ * makes detecting flushes, straights and pairs simple bit arithmetic.
+ * <p/>
+ * There is exactly one Card instance for each of the 52 cards, use
+ * {@link #valueOf(FACE, SUIT)} or {@link #valueOf(int)} to obtain it.
+ */
 public final class Card {
 
-    private FACE face;
-    private SUIT suit;
+    public static final int CARDS = 52;
+    public static final int FACES = 13;
+    public static final int SUITS = 4;
+    /**
+     * mask to select the 13 faces of one suit after shifting a card mask by
+     * 13 * suit.
+     */
+    public static final int FACEMASK = (1 << FACES) - 1;
+    private static final FACE faces[] = FACE.values();
+    private static final SUIT suits[] = SUIT.values();
+    private static final Card cards[] = new Card[CARDS];
 
-    public Card(FACE face, SUIT suit) {
-        this.face = face;
-        this.suit = suit;
+    static {
+        for (int i = 0; i < CARDS; i++) {
+            cards[i] = new Card(i);
+        }
+    }
+
+    private final FACE face;
+    private final SUIT suit;
+    private final int index;
+
+    private Card(int index) {
+        this.index = index;
+        this.face = faces[face(index)];
+        this.suit = suits[suit(index)];
+    }
+
+    /**
+     * @return the interned Card for the given index 0-51
+     */
+    public static Card valueOf(int index) {
+        return cards[index];
+    }
+
+    /**
+     * @return the interned Card for the given face and suit
+     */
+    public static Card valueOf(FACE face, SUIT suit) {
+        return cards[index(face, suit)];
+    }
+
+    /**
+     * @return the index 0-51 of the card with the given face and suit
+     */
+    public static int index(FACE face, SUIT suit) {
+        return suit.ordinal() * FACES + face.ordinal();
+    }
+
+    /**
+     * @return ordinal of the FACE of the card with the given index
+     */
+    public static int face(int index) {
+        return index % FACES;
+    }
+
+    /**
+     * @return ordinal of the SUIT of the card with the given index
+     */
+    public static int suit(int index) {
+        return index / FACES;
+    }
+
+    /**
+     * @return a card mask that contains only the card with the given index
+     */
+    public static long mask(int index) {
+        return 1L << index;
+    }
+
+    /**
+     * @return 13-bit mask of the faces (bit = FACE ordinal) the card mask
+     * contains for the given suit ordinal
+     */
+    public static int faces(long mask, int suit) {
+        return (int) (mask >>> (suit * FACES)) & FACEMASK;
+    }
+
+    /**
+     * @return 13-bit mask of the faces that appear in the card mask in any suit
+     */
+    public static int faces(long mask) {
+        return faces(mask, 0) | faces(mask, 1) | faces(mask, 2) | faces(mask, 3);
     }
 
     public FACE getFace() {
@@ -17,9 +104,23 @@ public final class Card {
     public SUIT getSuit() {
         return suit;
     }
-    
+
+    /**
+     * @return index 0-51 of this card
+     */
+    public int index() {
+        return index;
+    }
+
+    /**
+     * @return card mask that contains only this card
+     */
+    public long mask() {
+        return 1L << index;
+    }
+
     @Override
     public String toString() {
         return suit.toString() + face.toString();
     }
-}
\ No newline at end of file
+}
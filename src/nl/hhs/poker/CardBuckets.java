@@ -0,0 +1,136 @@
+package nl.hhs.poker;
+
+/**
+ * The card abstraction of a {@link CfrSolver}: hole cards that play alike
+ * on the community cards share a bucket, and the strategy is the same for
+ * all hole cards in a bucket. Before the flop the bucket is the class of the
+ * hole cards, see {@link PreflopEquity#classOf(int, int)}, which loses
+ * nothing. After the flop it is the percentile of the strength of the hand
+ * among all hole cards the opponent can hold, in a given number of equal
+ * parts, and on the flop and the turn doubled for hands with a flush draw
+ * or an open-ended straight draw, see {@link HandState}.
+ * <p/>
+ * The percentile takes one evaluation of every pair of hole cards on the
+ * community cards, about 1000, so the buckets of both players of a dealt
+ * game are computed together.
+ */
+final class CardBuckets {
+
+    private final int strengths;
+
+    /**
+     * @param strengths number of strength buckets after the flop
+     */
+    CardBuckets(int strengths) {
+        if (strengths < 1) {
+            throw new IllegalArgumentException("There must be at least one strength bucket");
+        }
+        this.strengths = strengths;
+    }
+
+    int strengths() {
+        return strengths;
+    }
+
+    /**
+     * @return number of buckets on the street, 0 is preflop
+     */
+    int count(int street) {
+        if (street == 0) {
+            return PreflopEquity.CLASSES;
+        }
+        return street == BettingTree.RIVER ? strengths : 2 * strengths;
+    }
+
+    /**
+     * @return number of buckets on every street
+     */
+    int[] counts() {
+        int counts[] = new int[BettingTree.STREETS];
+        for (int street = 0; street < counts.length; street++) {
+            counts[street] = count(street);
+        }
+        return counts;
+    }
+
+    /**
+     * @return street 0-3 of the given community cards
+     */
+    static int street(long board) {
+        int cards = Long.bitCount(board);
+        return cards == 0 ? 0 : cards - 2;
+    }
+
+    /**
+     * @param holecards card mask of the hole cards
+     * @param board card mask of 0, 3, 4 or 5 community cards
+     * @return bucket of the hole cards
+     */
+    int bucket(long holecards, long board) {
+        long hole[] = {holecards};
+        int bucket[] = new int[1];
+        bucket(board, hole, bucket, 1);
+        return bucket[0];
+    }
+
+    /**
+     * Computes the buckets of several players on the same community cards.
+     *
+     * @param board card mask of 0, 3, 4 or 5 community cards
+     * @param holecards card masks of the hole cards of the players
+     * @param buckets receives the bucket of every player
+     */
+    void bucket(long board, long holecards[], int buckets[], int players) {
+        int street = street(board);
+        if (street == 0) {
+            for (int p = 0; p < players; p++) {
+                long hole = holecards[p];
+                int card1 = Long.numberOfTrailingZeros(hole);
+                int card2 = Long.numberOfTrailingZeros(hole & (hole - 1));
+                buckets[p] = PreflopEquity.classOf(card1, card2);
+            }
+            return;
+        }
+        PartialHand community = new PartialHand(board);
+        int strength[] = new int[players];
+        int below[] = new int[players];
+        int equal[] = new int[players];
+        int hands[] = new int[players];
+        for (int p = 0; p < players; p++) {
+            long hole = holecards[p];
+            strength[p] = community.evaluate(Long.numberOfTrailingZeros(hole),
+                    Long.numberOfTrailingZeros(hole & (hole - 1)));
+        }
+        for (int combo = 0; combo < HandRange.COMBOS; combo++) {
+            long mask = HandRange.masks[combo];
+            if ((mask & board) != 0) {
+                continue;
+            }
+            int s = community.evaluate(HandRange.first[combo], HandRange.second[combo]);
+            for (int p = 0; p < players; p++) {
+                // the opponent cannot hold the cards of the player
+                if ((mask & holecards[p]) == 0) {
+                    hands[p]++;
+                    if (s < strength[p]) {
+                        below[p]++;
+                    } else if (s == strength[p]) {
+                        equal[p]++;
+                    }
+                }
+            }
+        }
+        for (int p = 0; p < players; p++) {
+            double percentile = (below[p] + equal[p] / 2.0) / hands[p];
+            int bucket = Math.min(strengths - 1, (int) (percentile * strengths));
+            if (street != BettingTree.RIVER) {
+                HandState state = new HandState(holecards[p]);
+                for (long cards = board; cards != 0; cards &= cards - 1) {
+                    state.add(Long.numberOfTrailingZeros(cards));
+                }
+                boolean draw = state.getFlushDraw() != null || state.isOpenEnded();
+                bucket = 2 * bucket + (draw ? 1 : 0);
+            }
+            buckets[p] = bucket;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package nl.hhs.poker;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Computer Player that plays heads-up by a strategy trained by a
+ * {@link CfrSolver}. The bot follows the game in the abstract
+ * {@link BettingTree}: every new Event moves it to the child of the action,
+ * and a raise of the opponent to the raise of the closest size, so finding
+ * the decision takes constant time per Event, and looking up the
+ * probabilities of the actions for the bucket of its cards one read each.
+ * <p/>
+ * The tree is trained for one stack, the same for both players, while the
+ * stacks drift in a Match. The bot maps the effective stack of a game, the
+ * smaller of the two, to the stack of the tree, so all-in stays all-in and
+ * the other bids scale along. That only plays well when the stack is about
+ * as deep as the trained one, counted in blinds, so a game that is more than
+ * {@link #MAX_DEPTH_RATIO} times deeper or shallower is not played by the
+ * tree at all.
+ * <p/>
+ * A raise that is not all-in is taken as all-in when the tree allows no
+ * other raise, so a small raise near the end of the stacks may end the tree
+ * before the game ends. Then, in a game too deep or too shallow for the
+ * tree, and with more than two players, the bot checks, and calls with a
+ * pair before the flop or two pair or better after it.
+ */
+public class CfrBot extends Player {
+
+    /**
+     * how much deeper or shallower than the trained stack, in blinds, the
+     * effective stack of a game may be for the bot to follow the tree
+     */
+    public static final double MAX_DEPTH_RATIO = 2;
+    private final CfrStrategy strategy;
+    private final Random random; // not shared, so matches can run in parallel
+    private Game current;
+    private int node; // -1 when the game left the tree
+    private int seen; // events of the current game followed so far
+    private double scale; // chips in the current game per chip in the tree
+
+    public CfrBot(CfrStrategy strategy) {
+        this(strategy, new Random().nextLong());
+    }
+
+    /**
+     * @param seed so the bot makes the same choices when a match is played
+     * again
+     */
+    public CfrBot(CfrStrategy strategy, long seed) {
+        this.strategy = strategy;
+        random = new Random(seed);
+    }
+
+    @Override
+    protected int raise(int gameBidLevel, Hand hand) {
+        Game game = getGame();
+        BettingTree tree = strategy.tree;
+        if (game != current) {
+            current = game;
+            node = -1;
+            seen = 0;
+            if (game.getPlayers().size() == 2) {
+                int effective = Math.min(game.getStartChips(0), game.getStartChips(1));
+                scale = (double) effective / tree.stack;
+                // the depth of the game in blinds relative to the tree's
+                double depth = scale * tree.blind / game.getBlindAmount();
+                if (depth <= MAX_DEPTH_RATIO && depth >= 1 / MAX_DEPTH_RATIO) {
+                    node = BettingTree.ROOT;
+                }
+            }
+        }
+        List<Event> events = game.getEventsSince(seen);
+        for (int i = 0; i < events.size() && node >= 0; i++) {
+            node = follow(node, events.get(i));
+        }
+        seen = game.getEventCount();
+        long board = game.getCommunityMask();
+        if (node >= 0 && tree.kind(node) == BettingTree.FOLDED) {
+            // the game asks once more after the opponent folded
+            return gameBidLevel - getPlayerBidLevel();
+        }
+        if (node < 0 || tree.kind(node) != BettingTree.DECISION || tree.player(node) != getSeat()
+                || tree.street(node) != CardBuckets.street(board)) {
+            node = -1;
+            return fallback(gameBidLevel);
+        }
+        int bucket = strategy.buckets.bucket(hand.getMask(), board);
+        int n = tree.actions(node);
+        float r = random.nextFloat();
+        int a = 0;
+        while (a < n - 1 && (r -= strategy.probability(node, bucket, a)) >= 0) {
+            a++;
+        }
+        int child = tree.first(node) + a;
+        switch (tree.move(child)) {
+            case BettingTree.FOLD:
+                return 0;
+            case BettingTree.CALL:
+                return gameBidLevel - getPlayerBidLevel();
+            case BettingTree.RAISE:
+                int to = (int) Math.round(tree.bid(child, getSeat()) * scale);
+                return Math.max(to, gameBidLevel + 1) - getPlayerBidLevel();
+            default:
+                return Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * @return the node the event leads to, or -1 if it leaves the tree
+     */
+    private int follow(int node, Event event) {
+        BettingTree tree = strategy.tree;
+        switch (event.type) {
+            case SMALLBLIND:
+            case BIGBLIND:
+                return node;
+            default:
+        }
+        if (tree.kind(node) != BettingTree.DECISION || tree.player(node) != event.player.getSeat()) {
+            return -1;
+        }
+        int p = tree.player(node);
+        int first = tree.first(node);
+        int n = tree.actions(node);
+        double to = event.bidLevel / scale;
+        int move;
+        switch (event.type) {
+            case FOLD:
+                move = BettingTree.FOLD;
+                break;
+            case ALLIN:
+                move = to > tree.bid(node, 1 - p) ? BettingTree.ALLIN : BettingTree.CALL;
+                break;
+            case RAISE:
+                move = BettingTree.RAISE;
+                break;
+            default:
+                move = BettingTree.CALL;
+        }
+        if (move == BettingTree.FOLD || move == BettingTree.CALL) {
+            for (int a = 0; a < n; a++) {
+                if (tree.move(first + a) == move) {
+                    return first + a;
+                }
+            }
+            return -1;
+        }
+        // an all-in to all-in, another raise to the raise of the closest size,
+        // or to all-in if the tree has no other raise left
+        int closest = -1;
+        double distance = Double.MAX_VALUE;
+        for (int a = 0; a < n; a++) {
+            int child = first + a;
+            if (tree.move(child) == BettingTree.ALLIN) {
+                if (move == BettingTree.ALLIN || closest < 0) {
+                    closest = child;
+                }
+            } else if (tree.move(child) == BettingTree.RAISE && move == BettingTree.RAISE) {
+                double d = Math.abs(Math.log(tree.bid(child, p) / to));
+                if (d < distance) {
+                    distance = d;
+                    closest = child;
+                }
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Plays without the tree: checks, and calls with a pair before the flop
+     * or two pair or better after it.
+     */
+    private int fallback(int gameBidLevel) {
+        HandState state = getHandState();
+        RANK needed = state.getCommunityCount() == 0 ? RANK.ONEPAIR : RANK.TWOPAIR;
+        if (state.getRank().compareTo(needed) >= 0) {
+            return gameBidLevel - getPlayerBidLevel();
+        }
+        return 0;
+    }
+
+    @Override
+    public String name() {
+        return "CfrBot";
+    }
+}
@@ -0,0 +1,452 @@
+package nl.hhs.poker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Trains a heads-up strategy by counterfactual regret minimization, for the
+ * abstract game of a {@link BettingTree} with {@link CardBuckets}, and writes
+ * the average strategy for a {@link CfrBot}:
+ * <pre>
+ * java nl.hhs.poker.CfrSolver checkpoint strategy [iterations [minutes]]
+ * </pre>
+ * or <code>ant cfr-strategy</code>. Training continues from the checkpoint
+ * if it exists, and writes it every given number of minutes.
+ * <p/>
+ * An iteration deals the cards of one game at random and walks the tree once
+ * for each player (external sampling): at the decisions of that player every
+ * action is tried and its regret updated, at the decisions of the opponent
+ * one action is sampled from the current strategy, which is added to the
+ * average strategy. The current strategy is regret matching on the regrets
+ * of the decision and bucket. With CFR+ negative regrets are set to 0 and the
+ * average strategy is weighted by the iteration, which converges faster than
+ * plain CFR. The buckets of the players are only computed for the streets a
+ * walk reaches.
+ * <p/>
+ * The regrets are a {@link FloatTable} and the strategy sums a
+ * {@link DoubleTable} outside the heap, with an entry per decision, bucket
+ * and action. The sums are doubles because with CFR+ a sum grows with the
+ * square of the iterations, and a float stops adding the new terms after
+ * some 10^7 iterations. Both tables are updated without locks by all
+ * threads of a fork/join pool, which play their own iterations;
+ * an update that is lost because two threads change the same entry at the
+ * same time only adds a little noise. A checkpoint holds the configuration
+ * and both tables, and is written to a new file that replaces the old one,
+ * so an interrupted checkpoint does not destroy the previous one.
+ */
+public final class CfrSolver {
+
+    public static final int STACK = 10000; // the chips a Player starts with
+    public static final int BLIND = 1600; // the small blind of a game of two players
+    static final int MAGIC = 0x43465252; // "CFRR", a checkpoint
+    static final int STRATEGY_MAGIC = 0x43465253; // "CFRS", an average strategy
+    static final int VERSION = 1; // of a strategy
+    static final int CHECKPOINT_VERSION = 2; // the sums are doubles since version 2
+    private static final float SIZES[] = {0.5f, 1f};
+    private static final int MAX_RAISES = 3;
+    private static final int STRENGTHS = 8;
+    private static final int LEAF_ITERATIONS = 256;
+    private static final int BATCH = 10000;
+    private final Header header;
+    private final BettingTree tree;
+    private final CardBuckets buckets;
+    private final FloatTable regrets;
+    private final DoubleTable sums;
+    private final ForkJoinPool pool;
+    private final float unit; // one big blind in chips
+    private long iterations;
+
+    /**
+     * CFR+ with a stack of {@value #STACK} and a blind of {@value #BLIND},
+     * raises of half the pot, the pot and all-in at most 3 times per street,
+     * and 8 strength buckets
+     */
+    public CfrSolver() {
+        this(STACK, BLIND, SIZES, MAX_RAISES, STRENGTHS, true);
+    }
+
+    /**
+     * @param stack chips of each player at the start of the game
+     * @param blind the small blind, see {@link Game#getBlindAmount()}
+     * @param sizes raises as fractions of the pot after calling, all-in is
+     * always a raise
+     * @param maxRaises raises per street, all-in included
+     * @param strengths number of strength buckets after the flop
+     * @param plus true for CFR+, false for plain CFR
+     */
+    public CfrSolver(int stack, int blind, float sizes[], int maxRaises, int strengths, boolean plus) {
+        this(new Header(stack, blind, sizes, maxRaises, strengths, plus));
+    }
+
+    private CfrSolver(Header header) {
+        this.header = header;
+        buckets = new CardBuckets(header.strengths);
+        tree = header.tree(buckets);
+        regrets = new FloatTable(tree.entries());
+        sums = new DoubleTable(tree.entries());
+        pool = EquityCalculator.defaultPool;
+        unit = 1f / (2 * header.blind);
+        iterations = header.iterations;
+    }
+
+    public static void main(String args[]) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CfrSolver checkpoint strategy [iterations [minutes]]");
+            return;
+        }
+        File checkpoint = new File(args[0]);
+        File strategy = new File(args[1]);
+        long target = args.length > 2 ? Long.parseLong(args[2]) : 1000000;
+        long every = 60000 * (args.length > 3 ? Long.parseLong(args[3]) : 10);
+        CfrSolver solver = checkpoint.exists() ? load(checkpoint) : new CfrSolver();
+        System.out.println(solver.tree.nodes() + " nodes, " + solver.getEntries() + " entries, "
+                + solver.getIterations() + " iterations done");
+        long start = System.currentTimeMillis();
+        long last = start;
+        long from = solver.getIterations();
+        while (solver.getIterations() < target) {
+            solver.train(Math.min(BATCH, target - solver.getIterations()));
+            long now = System.currentTimeMillis();
+            if (now - last >= every) {
+                solver.checkpoint(checkpoint);
+                last = now;
+                System.out.println(solver.getIterations() + " iterations, "
+                        + 1000 * (solver.getIterations() - from) / Math.max(1, now - start) + " per second");
+            }
+        }
+        solver.checkpoint(checkpoint);
+        solver.writeStrategy(strategy);
+        System.out.println(solver.getIterations() + " iterations in " + (System.currentTimeMillis() - start)
+                + " ms, strategy written to " + strategy);
+    }
+
+    /**
+     * @return the number of iterations trained so far
+     */
+    public long getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return the number of entries of each of the regret and strategy tables
+     */
+    public long getEntries() {
+        return tree.entries();
+    }
+
+    /**
+     * Trains the given number of iterations on the threads of the pool. Not
+     * to be called by several threads at the same time.
+     */
+    public void train(long count) {
+        pool.invoke(new Iterations(iterations, iterations + count));
+        iterations += count;
+    }
+
+    /**
+     * Writes the configuration, the regrets and the strategy sums to the file
+     */
+    public void checkpoint(File file) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile out = new RandomAccessFile(temporary, "rw")) {
+            out.setLength(0);
+            FileChannel channel = out.getChannel();
+            header.iterations = iterations;
+            header.write(channel, MAGIC, tree.entries());
+            regrets.write(channel);
+            sums.write(channel);
+            channel.force(false);
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return a solver that continues the training of the checkpoint
+     */
+    public static CfrSolver load(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            FileChannel channel = in.getChannel();
+            CfrSolver solver = new CfrSolver(Header.read(channel, MAGIC, file));
+            solver.regrets.read(channel);
+            solver.sums.read(channel);
+            return solver;
+        }
+    }
+
+    /**
+     * Writes the average strategy, the probabilities of the actions at every
+     * decision and bucket, for {@link CfrStrategy#load(File)}. The file is
+     * replaced as a whole, so bots that mapped the previous strategy keep
+     * reading it.
+     */
+    public void writeStrategy(File file) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile out = new RandomAccessFile(temporary, "rw")) {
+            out.setLength(0);
+            FileChannel channel = out.getChannel();
+            header.iterations = iterations;
+            header.write(channel, STRATEGY_MAGIC, tree.entries());
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+            for (int node = 0; node < tree.nodes(); node++) {
+                if (tree.kind(node) != BettingTree.DECISION) {
+                    continue;
+                }
+                int n = tree.actions(node);
+                for (int bucket = 0; bucket < tree.buckets(tree.street(node)); bucket++) {
+                    long base = tree.offset(node) + (long) bucket * n;
+                    double total = 0;
+                    for (int a = 0; a < n; a++) {
+                        total += sums.get(base + a);
+                    }
+                    if (buffer.remaining() < 4 * n) {
+                        flush(buffer, channel);
+                    }
+                    for (int a = 0; a < n; a++) {
+                        // a bucket that was never reached is played uniformly
+                        buffer.putFloat(total > 0 ? (float) (sums.get(base + a) / total) : 1f / n);
+                    }
+                }
+            }
+            flush(buffer, channel);
+            channel.force(false);
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * The configuration of the abstraction and the number of iterations, as
+     * written at the start of checkpoints and strategies.
+     */
+    static final class Header {
+
+        final int stack;
+        final int blind;
+        final float sizes[];
+        final int maxRaises;
+        final int strengths;
+        final boolean plus;
+        long iterations;
+
+        Header(int stack, int blind, float sizes[], int maxRaises, int strengths, boolean plus) {
+            this.stack = stack;
+            this.blind = blind;
+            this.sizes = sizes.clone();
+            this.maxRaises = maxRaises;
+            this.strengths = strengths;
+            this.plus = plus;
+        }
+
+        BettingTree tree(CardBuckets buckets) {
+            return new BettingTree(stack, blind, sizes, maxRaises, buckets.counts());
+        }
+
+        void write(FileChannel channel, int magic, long entries) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(48 + 4 * sizes.length);
+            buffer.putInt(magic).putInt(version(magic)).putInt(stack).putInt(blind).putInt(maxRaises)
+                    .putInt(strengths).putInt(plus ? 1 : 0).putInt(sizes.length);
+            for (float size : sizes) {
+                buffer.putFloat(size);
+            }
+            buffer.putLong(iterations).putLong(entries);
+            flush(buffer, channel);
+        }
+
+        static Header read(FileChannel channel, int magic, File file) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(32);
+            read(channel, buffer);
+            if (buffer.getInt() != magic || buffer.getInt() != version(magic)) {
+                throw new IOException(file + " is not a version " + version(magic)
+                        + (magic == MAGIC ? " checkpoint" : " strategy"));
+            }
+            int stack = buffer.getInt();
+            int blind = buffer.getInt();
+            int maxRaises = buffer.getInt();
+            int strengths = buffer.getInt();
+            boolean plus = buffer.getInt() != 0;
+            float sizes[] = new float[buffer.getInt()];
+            buffer = ByteBuffer.allocate(4 * sizes.length + 16);
+            read(channel, buffer);
+            for (int i = 0; i < sizes.length; i++) {
+                sizes[i] = buffer.getFloat();
+            }
+            Header header = new Header(stack, blind, sizes, maxRaises, strengths, plus);
+            header.iterations = buffer.getLong();
+            long entries = buffer.getLong();
+            if (entries != header.tree(new CardBuckets(strengths)).entries()) {
+                throw new IOException(file + " does not match its configuration");
+            }
+            return header;
+        }
+
+        private static int version(int magic) {
+            return magic == MAGIC ? CHECKPOINT_VERSION : VERSION;
+        }
+
+        private static void read(FileChannel channel, ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("The file ends in the header");
+                }
+            }
+            buffer.flip();
+        }
+    }
+
+    /**
+     * Plays the iterations from up to to, split over the threads of the pool
+     */
+    @SuppressWarnings("serial") // never serialized
+    private final class Iterations extends RecursiveAction {
+
+        private final long from;
+        private final long to;
+
+        Iterations(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_ITERATIONS) {
+                long mid = (from + to) >>> 1;
+                invokeAll(new Iterations(from, mid), new Iterations(mid, to));
+                return;
+            }
+            Walk walk = new Walk(ThreadLocalRandom.current());
+            for (long t = from; t < to; t++) {
+                walk.deal();
+                // CFR+ weighs the average strategy by the iteration
+                double weight = header.plus ? t + 1 : 1;
+                walk.traverse(BettingTree.ROOT, 0, weight, 0);
+                walk.traverse(BettingTree.ROOT, 1, weight, 0);
+            }
+        }
+    }
+
+    /**
+     * The cards of one dealt game and the scratch space of the walks
+     */
+    private final class Walk {
+
+        private final Random random;
+        private final long holecards[] = new long[2];
+        private final long boards[] = new long[BettingTree.STREETS]; // community cards per street
+        private final int bucket[] = new int[2 * BettingTree.STREETS];
+        private final boolean bucketed[] = new boolean[BettingTree.STREETS];
+        private final int pair[] = new int[2];
+        private int winner; // 1 if player 0 wins the showdown, -1 if player 1 does, 0 for a tie
+        private final float strategy[];
+        private final float value[];
+
+        Walk(Random random) {
+            this.random = random;
+            strategy = new float[tree.maxDepth() * tree.maxActions];
+            value = new float[tree.maxDepth() * tree.maxActions];
+        }
+
+        void deal() {
+            long used = 0;
+            int cards[] = new int[9];
+            for (int i = 0; i < cards.length; i++) {
+                int card;
+                do {
+                    card = random.nextInt(Card.CARDS);
+                } while ((used & Card.mask(card)) != 0);
+                used |= Card.mask(card);
+                cards[i] = card;
+            }
+            holecards[0] = Card.mask(cards[0]) | Card.mask(cards[1]);
+            holecards[1] = Card.mask(cards[2]) | Card.mask(cards[3]);
+            boards[0] = 0;
+            boards[1] = Card.mask(cards[4]) | Card.mask(cards[5]) | Card.mask(cards[6]);
+            boards[2] = boards[1] | Card.mask(cards[7]);
+            boards[3] = boards[2] | Card.mask(cards[8]);
+            winner = Integer.signum(HandEvaluator.evaluate(boards[3] | holecards[0])
+                    - HandEvaluator.evaluate(boards[3] | holecards[1]));
+            Arrays.fill(bucketed, false);
+        }
+
+        private int bucket(int street, int p) {
+            if (!bucketed[street]) {
+                buckets.bucket(boards[street], holecards, pair, 2);
+                bucket[2 * street] = pair[0];
+                bucket[2 * street + 1] = pair[1];
+                bucketed[street] = true;
+            }
+            return bucket[2 * street + p];
+        }
+
+        /**
+         * @return the value of the node for the traverser in big blinds
+         */
+        float traverse(int node, int traverser, double weight, int depth) {
+            int kind = tree.kind(node);
+            if (kind == BettingTree.FOLDED) {
+                int folder = tree.player(node);
+                return (folder == traverser ? -tree.bid(node, folder) : tree.bid(node, folder)) * unit;
+            }
+            if (kind == BettingTree.SHOWDOWN) {
+                int won = traverser == 0 ? winner : -winner;
+                return won * tree.bid(node, traverser) * unit;
+            }
+            int p = tree.player(node);
+            int n = tree.actions(node);
+            long base = tree.offset(node) + (long) bucket(tree.street(node), p) * n;
+            int s = depth * tree.maxActions;
+            float total = 0;
+            for (int a = 0; a < n; a++) {
+                float regret = regrets.get(base + a);
+                strategy[s + a] = regret > 0 ? regret : 0;
+                total += strategy[s + a];
+            }
+            for (int a = 0; a < n; a++) {
+                strategy[s + a] = total > 0 ? strategy[s + a] / total : 1f / n;
+            }
+            int child = tree.first(node);
+            if (p == traverser) {
+                float expected = 0;
+                for (int a = 0; a < n; a++) {
+                    value[s + a] = traverse(child + a, traverser, weight, depth + 1);
+                    expected += strategy[s + a] * value[s + a];
+                }
+                for (int a = 0; a < n; a++) {
+                    float regret = regrets.get(base + a) + value[s + a] - expected;
+                    regrets.set(base + a, header.plus && regret < 0 ? 0 : regret);
+                }
+                return expected;
+            }
+            float r = random.nextFloat();
+            int sampled = -1;
+            for (int a = 0; a < n; a++) {
+                sums.add(base + a, weight * strategy[s + a]);
+                r -= strategy[s + a];
+                if (r < 0 && sampled < 0) {
+                    sampled = a;
+                }
+            }
+            // rounding may leave r just above 0
+            return traverse(child + (sampled < 0 ? n - 1 : sampled), traverser, weight, depth + 1);
+        }
+    }
+}
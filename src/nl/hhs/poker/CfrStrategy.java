@@ -0,0 +1,59 @@
+package nl.hhs.poker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+/**
+ * A heads-up strategy trained by a {@link CfrSolver}: the probability of
+ * every action at every decision of the {@link BettingTree} and bucket of
+ * the {@link CardBuckets}. The probabilities are mapped from the file, so
+ * loading takes no time and heap however large the strategy is, and bots
+ * that share a strategy share its memory. A lookup is one read at a
+ * computed position.
+ */
+public final class CfrStrategy {
+
+    final BettingTree tree;
+    final CardBuckets buckets;
+    private final FloatTable probabilities;
+    private final long iterations;
+
+    private CfrStrategy(BettingTree tree, CardBuckets buckets, FloatTable probabilities, long iterations) {
+        this.tree = tree;
+        this.buckets = buckets;
+        this.probabilities = probabilities;
+        this.iterations = iterations;
+    }
+
+    /**
+     * @param file written by {@link CfrSolver#writeStrategy(File)}
+     */
+    public static CfrStrategy load(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            FileChannel channel = in.getChannel();
+            CfrSolver.Header header = CfrSolver.Header.read(channel, CfrSolver.STRATEGY_MAGIC, file);
+            CardBuckets buckets = new CardBuckets(header.strengths);
+            BettingTree tree = header.tree(buckets);
+            // the mapping stays valid when the file is closed
+            FloatTable probabilities = FloatTable.map(channel, FileChannel.MapMode.READ_ONLY, channel.position(),
+                    tree.entries());
+            return new CfrStrategy(tree, buckets, probabilities, header.iterations);
+        }
+    }
+
+    /**
+     * @return the number of iterations the strategy was trained
+     */
+    public long getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return probability of action a at the decision node for the bucket
+     */
+    float probability(int node, int bucket, int a) {
+        return probabilities.get(tree.offset(node) + (long) bucket * tree.actions(node) + a);
+    }
+}
@@ -0,0 +1,337 @@
+package nl.hhs.poker;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Measures the decisions of the bots per Player class: a latency histogram
+ * (p50, p99 and max), the number of decisions per EVENTTYPE they resulted
+ * in, and the CPU time spent. Every bot class is registered as an MXBean
+ * named nl.hhs.poker:type=Decisions,bot=&lt;class&gt;, and
+ * {@link #startDump(PrintStream, long)} prints all of them periodically.
+ * <p/>
+ * The measuring is off by default, {@link #setEnabled(boolean)} turns it
+ * on for all games. Because a decision of a simple bot takes less time than
+ * reading the clock, only one in {@link #setSampling(int) every} decisions is
+ * measured and counted for that many, and the CPU time, which is even more
+ * expensive to read, only for one in {@link #CPU_SAMPLE} of those. A single
+ * reading is too coarse for a decision of a simple bot, so the CPU time is
+ * estimated as the wall time of all decisions times the share of it the
+ * decisions that read the CPU time spent on the CPU: never more than the
+ * wall time, and close to it for short decisions, where reading the clocks
+ * dominates. The counters are updated without locking. The latency is kept in buckets of
+ * 1/8 of a power of two, so the percentiles are within 12.5%.
+ */
+public final class DecisionStats implements DecisionStatsMXBean {
+
+    private static final int LINEAR = 16; // latencies below this get their own bucket
+    private static final int BUCKETS = LINEAR + (64 - 4) * 8;
+    private static final EVENTTYPE eventtypes[] = EVENTTYPE.values();
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private static final boolean cpuTime = threads.isCurrentThreadCpuTimeSupported();
+    private static final ConcurrentHashMap<Class<?>, DecisionStats> bots = new ConcurrentHashMap();
+    // looked up for every new player, which is cheaper than the map
+    private static final ClassValue<DecisionStats> byClass = new ClassValue<DecisionStats>() {
+        @Override
+        protected DecisionStats computeValue(Class<?> bot) {
+            DecisionStats created = new DecisionStats(bot);
+            DecisionStats stats = bots.putIfAbsent(bot, created);
+            if (stats == null) {
+                stats = created;
+                stats.register();
+            }
+            return stats;
+        }
+    };
+    /**
+     * one in this many measured decisions also measures the CPU time
+     */
+    public static final int CPU_SAMPLE = 8;
+    private static volatile boolean enabled = false;
+    private static volatile int sampling = 1024;
+    private static ScheduledExecutorService dumper;
+    private final Class<?> bot;
+    private final AtomicLongArray latency = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray outcomes = new AtomicLongArray(eventtypes.length);
+    private final AtomicLong max = new AtomicLong();
+    private final AtomicLong wall = new AtomicLong(); // of all decisions, estimated
+    private final AtomicLong cpu = new AtomicLong(); // of the decisions that measured it
+    private final AtomicLong cpuWall = new AtomicLong(); // of the same decisions
+    private final AtomicLong timeouts = new AtomicLong();
+    // count down to the next measured decision, not thread safe on purpose:
+    // a lost update only moves the sample
+    private int countdown = 1;
+    private int cpuCountdown = 1;
+
+    private DecisionStats(Class<?> bot) {
+        this.bot = bot;
+    }
+
+    /**
+     * Turns measuring the decisions of all bots on or off.
+     */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param every measure one in this many decisions, 1 measures all, the
+     * default is 1024
+     */
+    public static void setSampling(int every) {
+        if (every < 1) {
+            throw new IllegalArgumentException("Sampling must be at least 1");
+        }
+        sampling = every;
+    }
+
+    /**
+     * @return the decision that is about to be made should be measured
+     */
+    boolean sample() {
+        if (--countdown > 0) {
+            return false;
+        }
+        countdown = sampling;
+        return true;
+    }
+
+    /**
+     * @return the CPU time of the measured decision that is about to be made
+     * should be measured too
+     */
+    boolean sampleCpu() {
+        if (--cpuCountdown > 0) {
+            return false;
+        }
+        cpuCountdown = CPU_SAMPLE;
+        return true;
+    }
+
+    /**
+     * @return the statistics of the bot class, registered over JMX the first
+     * time
+     */
+    public static DecisionStats of(Class<?> bot) {
+        return byClass.get(bot);
+    }
+
+    private void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    new ObjectName("nl.hhs.poker:type=Decisions,bot=" + ObjectName.quote(bot.getName())));
+        } catch (JMException ex) {
+            // the statistics still work without JMX, e.g. when another class
+            // loader registered the same bot
+        }
+    }
+
+    /**
+     * @return CPU time of the current thread in nanoseconds, or 0 if the
+     * JVM does not measure it
+     */
+    static long cpuTime() {
+        return cpuTime ? threads.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * Counts a measured decision that took the given wall time and CPU time
+     * in nanoseconds, or -1 if the CPU time was not measured, and resulted in
+     * an Event of the given type.
+     */
+    void record(long nanos, long cpuNanos, EVENTTYPE outcome) {
+        int weight = sampling;
+        latency.incrementAndGet(bucket(nanos));
+        outcomes.addAndGet(outcome.ordinal(), weight);
+        wall.addAndGet(Math.max(0, nanos) * weight);
+        if (cpuNanos >= 0) {
+            // not weighted: only the share of the wall time is used
+            cpu.addAndGet(Math.max(0, cpuNanos));
+            cpuWall.addAndGet(Math.max(0, nanos));
+        }
+        long m = max.get();
+        while (nanos > m && !max.compareAndSet(m, nanos)) {
+            m = max.get();
+        }
+    }
+
+    /**
+     * Counts a decision that was not made in time, every one is counted.
+     */
+    void timeout() {
+        timeouts.incrementAndGet();
+    }
+
+    static int bucket(long nanos) {
+        if (nanos < LINEAR) {
+            return (int) Math.max(0, nanos);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        return LINEAR + (exponent - 4) * 8 + (int) ((nanos >>> (exponent - 3)) & 7);
+    }
+
+    /**
+     * @return the largest latency in the bucket
+     */
+    static long upper(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR) / 8 + 4;
+        long sub = (bucket - LINEAR) % 8;
+        return ((8 + sub + 1) << (exponent - 3)) - 1;
+    }
+
+    private double percentile(double p) {
+        long counts[] = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = latency.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(p * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upper(i), max.get()) / 1000.0;
+            }
+        }
+        return max.get() / 1000.0;
+    }
+
+    @Override
+    public String getBot() {
+        return bot.getName();
+    }
+
+    @Override
+    public long getDecisions() {
+        long decisions = 0;
+        for (int i = 0; i < outcomes.length(); i++) {
+            decisions += outcomes.get(i);
+        }
+        return decisions;
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    @Override
+    public Map<String, Long> getOutcomes() {
+        Map<String, Long> map = new LinkedHashMap();
+        for (int i = 0; i < outcomes.length(); i++) {
+            if (outcomes.get(i) > 0) {
+                map.put(eventtypes[i].name(), outcomes.get(i));
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return percentile(0.5);
+    }
+
+    @Override
+    public double getP99Micros() {
+        return percentile(0.99);
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return max.get() / 1000.0;
+    }
+
+    @Override
+    public double getCpuMillis() {
+        long measured = cpuWall.get();
+        if (measured == 0) {
+            return 0;
+        }
+        double share = Math.min(1, (double) cpu.get() / measured);
+        return wall.get() * share / 1e6;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            latency.set(i, 0);
+        }
+        for (int i = 0; i < outcomes.length(); i++) {
+            outcomes.set(i, 0);
+        }
+        max.set(0);
+        wall.set(0);
+        cpu.set(0);
+        cpuWall.set(0);
+        timeouts.set(0);
+    }
+
+    /**
+     * @return a table with the decisions of every bot class measured so far
+     */
+    public static String dump() {
+        ArrayList<DecisionStats> list = new ArrayList(bots.values());
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-16s %12s %10s %10s %10s %10s %8s  %s%n",
+                "bot", "decisions", "p50 us", "p99 us", "max us", "cpu ms", "timeouts", "outcomes"));
+        for (DecisionStats s : list) {
+            sb.append(String.format("%-16s %12d %10.2f %10.2f %10.2f %10.1f %8d  %s%n",
+                    s.bot.getSimpleName(), s.getDecisions(), s.getP50Micros(), s.getP99Micros(),
+                    s.getMaxMicros(), s.getCpuMillis(), s.getTimeouts(), s.getOutcomes()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Prints {@link #dump()} to out every period, on a daemon thread, until
+     * {@link #stopDump()}.
+     */
+    public static synchronized void startDump(final PrintStream out, long periodMillis) {
+        stopDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "decision-stats");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        dumper.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                out.print(dump());
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stopDump() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+}
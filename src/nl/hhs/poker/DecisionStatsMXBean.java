@@ -0,0 +1,45 @@
+package nl.hhs.poker;
+
+import java.util.Map;
+
+/**
+ * The decisions of one bot class as shown over JMX, see {@link DecisionStats}.
+ */
+public interface DecisionStatsMXBean {
+
+    String getBot();
+
+    /**
+     * @return estimated number of decisions, the measured decisions times
+     * the sampling
+     */
+    long getDecisions();
+
+    /**
+     * @return number of decisions that were not made in time, see
+     * {@link Match#setDecisionTimeout(long)}
+     */
+    long getTimeouts();
+
+    /**
+     * @return estimated number of decisions per EVENTTYPE they resulted in
+     */
+    Map<String, Long> getOutcomes();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    /**
+     * @return the largest latency of the measured decisions
+     */
+    double getMaxMicros();
+
+    /**
+     * @return estimated CPU time spent in the decisions, at most their wall
+     * time
+     */
+    double getCpuMillis();
+
+    void reset();
+}
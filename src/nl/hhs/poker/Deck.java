@@ -1,33 +1,125 @@
 package nl.hhs.poker;
 
-import java.util.ArrayList;
 import java.util.Random;
 
-public final class Deck {    
-    private final Card cards[];
-    private static final Random randNum = new Random();
-    private int nextCard = 0;
+/**
+ * A deck of 52 cards that is shuffled lazily: every dealt card is drawn at
+ * random from the cards that are left (a Fisher-Yates shuffle of which only
+ * the steps for the dealt cards are done), so dealing n cards costs n random
+ * numbers, and every order of the cards is equally likely.
+ * <p/>
+ * A Deck can be reused: {@link #reset()} returns all dealt cards in constant
+ * time. Cards that are known to be out of play can be taken out with
+ * {@link #remove(int)}, these stay out after a reset until {@link #restore()}.
+ * After {@link #reset(long)} the deck deals exactly the same cards for the
+ * same seed, so a game can be played again.
+ */
+public final class Deck {
+    private static final int ordered[] = new int[Card.CARDS];
+    private final int cards[] = new int[Card.CARDS];
+    private final int position[] = new int[Card.CARDS]; // position in cards for each card
+    private final Random random;
+    private int removed = 0; // cards before this position are removed
+    private int nextCard = 0; // cards before this position are removed or dealt
 
-    public Deck() {
-        ArrayList<Card> newdeck = new ArrayList();
-        for (SUIT suit : SUIT.values()) {
-            for (FACE face : FACE.values())
-               newdeck.add(new Card(face, suit));
+    static {
+        for (int i = 0; i < Card.CARDS; i++) {
+            ordered[i] = i;
         }
-        cards = newdeck.toArray(new Card[0]);
-        shuffle();
     }
 
-    private void shuffle() {
-        for (int i = 0; i < cards.length; i++) {
-            int j = randNum.nextInt(cards.length);
-            Card c = cards[i];
-            cards[i] = cards[j];
-            cards[j] = c;
-        }
+    public Deck() {
+        this(new Random());
     }
-    
+
+    /**
+     * @param random generator used to draw the cards, must only be used by
+     * one thread at a time
+     */
+    public Deck(Random random) {
+        this.random = random;
+        System.arraycopy(ordered, 0, cards, 0, Card.CARDS);
+        System.arraycopy(ordered, 0, position, 0, Card.CARDS);
+    }
+
     public Card dealCard() {
+        return Card.valueOf(dealCardIndex());
+    }
+
+    /**
+     * @return index 0-51 of the next card, see {@link Card#index()}
+     */
+    public int dealCardIndex() {
+        swap(nextCard, nextCard + random.nextInt(Card.CARDS - nextCard));
         return cards[nextCard++];
     }
+
+    /**
+     * Takes a card that is known to be out of play out of the deck, so it
+     * cannot be dealt until {@link #restore()}.
+     *
+     * @param card index 0-51 of the card
+     */
+    public void remove(int card) {
+        int p = position[card];
+        if (p < nextCard) {
+            throw new IllegalStateException("Card " + Card.valueOf(card) + " is not in the deck");
+        }
+        if (nextCard > removed) {
+            throw new IllegalStateException("Cannot remove cards after cards were dealt");
+        }
+        swap(p, nextCard++);
+        removed++;
+    }
+
+    /**
+     * Takes all cards in the card mask out of the deck, see {@link #remove(int)}
+     */
+    public void remove(long mask) {
+        for (; mask != 0; mask &= mask - 1) {
+            remove(Long.numberOfTrailingZeros(mask));
+        }
+    }
+
+    /**
+     * Returns all dealt cards to the deck, removed cards stay out.
+     */
+    public void reset() {
+        nextCard = removed;
+    }
+
+    /**
+     * Returns all dealt and removed cards to the deck, puts them back in the
+     * original order and restarts the random generator with the seed, so the
+     * cards that are dealt next only depend on the seed.
+     */
+    public void reset(long seed) {
+        random.setSeed(seed);
+        System.arraycopy(ordered, 0, cards, 0, Card.CARDS);
+        System.arraycopy(ordered, 0, position, 0, Card.CARDS);
+        restore();
+    }
+
+    /**
+     * Returns all dealt and removed cards to the deck.
+     */
+    public void restore() {
+        removed = 0;
+        nextCard = 0;
+    }
+
+    /**
+     * @return number of cards that can still be dealt
+     */
+    public int size() {
+        return Card.CARDS - nextCard;
+    }
+
+    private void swap(int i, int j) {
+        int c = cards[i];
+        cards[i] = cards[j];
+        cards[j] = c;
+        position[cards[i]] = i;
+        position[c] = j;
+    }
 }
@@ -0,0 +1,64 @@
+package nl.hhs.poker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A table of doubles outside the Java heap, like {@link FloatTable}, for sums
+ * that grow too large to add small terms to as a float. The doubles are kept
+ * in direct buffers of at most 2^27 doubles (1 GiB) each.
+ * <p/>
+ * As in a FloatTable, threads that add to the same entry at the same time
+ * may lose an addition.
+ */
+final class DoubleTable {
+
+    private static final int CHUNK_BITS = 27;
+    private static final int CHUNK = 1 << CHUNK_BITS;
+    private final ByteBuffer bytes[];
+    private final DoubleBuffer doubles[];
+    private final long size;
+
+    /**
+     * A table of the given size in direct memory, filled with 0
+     */
+    DoubleTable(long size) {
+        this.size = size;
+        bytes = new ByteBuffer[(int) ((size + CHUNK - 1) >>> CHUNK_BITS)];
+        doubles = new DoubleBuffer[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = ByteBuffer.allocateDirect(8 * (int) Math.min(CHUNK, size - ((long) i << CHUNK_BITS)));
+            doubles[i] = bytes[i].asDoubleBuffer();
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    double get(long i) {
+        return doubles[(int) (i >>> CHUNK_BITS)].get((int) i & (CHUNK - 1));
+    }
+
+    void add(long i, double value) {
+        DoubleBuffer chunk = doubles[(int) (i >>> CHUNK_BITS)];
+        int j = (int) i & (CHUNK - 1);
+        chunk.put(j, chunk.get(j) + value);
+    }
+
+    /**
+     * Writes all entries to the channel at its position
+     */
+    void write(FileChannel channel) throws IOException {
+        FloatTable.write(bytes, channel);
+    }
+
+    /**
+     * Reads all entries from the channel at its position
+     */
+    void read(FileChannel channel) throws IOException {
+        FloatTable.read(bytes, channel);
+    }
+}
@@ -0,0 +1,99 @@
+package nl.hhs.poker;
+
+/**
+ * Result of an equity calculation by {@link EquityCalculator}: for every
+ * player with known hole cards the percentage of runouts won outright, the
+ * percentage tied, and the equity, which is the percentage of the pot the
+ * player wins on average (a tie between k players counts as 1/k). For the
+ * ranges of {@link RangeEquityCalculator} every showdown counts with the
+ * weights of the hole cards in it.
+ */
+public final class Equity {
+
+    private final long trials;
+    private final double showdowns;
+    private final double wins[];
+    private final double ties[];
+    private final double shares[];
+    private final double error;
+
+    Equity(long trials, long wins[], long ties[], double shares[], double error) {
+        this(trials, trials, toDouble(wins), toDouble(ties), shares, error);
+    }
+
+    /**
+     * @param showdowns the weight of all showdowns the wins, ties and shares
+     * are counted in, when the hole cards are weighted, see
+     * {@link RangeEquityCalculator}
+     */
+    Equity(long trials, double showdowns, double wins[], double ties[], double shares[], double error) {
+        this.trials = trials;
+        this.showdowns = showdowns;
+        this.wins = wins;
+        this.ties = ties;
+        this.shares = shares;
+        this.error = error;
+    }
+
+    private static double[] toDouble(long counts[]) {
+        double result[] = new double[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            result[i] = counts[i];
+        }
+        return result;
+    }
+
+    /**
+     * @return number of players with known hole cards
+     */
+    public int getPlayers() {
+        return wins.length;
+    }
+
+    /**
+     * @return number of board runouts the result is based on, when
+     * enumerated exactly this is every possible runout
+     */
+    public long getTrials() {
+        return trials;
+    }
+
+    /**
+     * @return percentage of runouts that the player wins outright
+     */
+    public double getWin(int player) {
+        return 100.0 * wins[player] / showdowns;
+    }
+
+    /**
+     * @return percentage of runouts that the player ties for the win
+     */
+    public double getTie(int player) {
+        return 100.0 * ties[player] / showdowns;
+    }
+
+    /**
+     * @return percentage of the pot the player wins on average
+     */
+    public double getEquity(int player) {
+        return 100.0 * shares[player] / showdowns;
+    }
+
+    /**
+     * @return half-width in percent of the 95% confidence interval of the
+     * least precise equity, 0 when the equity was enumerated exactly
+     */
+    public double getError() {
+        return 100.0 * error;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < wins.length; i++) {
+            sb.append(String.format("player %d win %.2f%% tie %.2f%% equity %.2f%%%n",
+                    i, getWin(i), getTie(i), getEquity(i)));
+        }
+        return sb.append(String.format("%d trials, error %.3f%%", trials, getError())).toString();
+    }
+}
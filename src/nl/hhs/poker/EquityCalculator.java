@@ -0,0 +1,365 @@
+package nl.hhs.poker;
+
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Estimates the equity of players with known hole cards by dealing random
+ * runouts of the board, optionally against opponents with unknown cards. The
+ * runouts are split over all cores with fork/join, every thread uses its own
+ * random generator, and the calculation stops when the 95% confidence
+ * interval of every player's equity is narrow enough, or when the time budget
+ * runs out.
+ * <p/>
+ * When ground truth is needed, {@link #enumerate(long[], long, long)}
+ * computes the exact equity by evaluating every possible runout instead,
+ * with the runouts partitioned over the threads by their first card.
+ */
+public final class EquityCalculator {
+
+    static final ForkJoinPool defaultPool = new ForkJoinPool();
+    private static final int FIRST_ROUND = 10000;
+    private static final int LEAF_TRIALS = 2048;
+    private final ForkJoinPool pool;
+
+    public EquityCalculator() {
+        this(defaultPool);
+    }
+
+    public EquityCalculator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param hands hole cards of the players with known cards
+     * @param board community cards dealt so far, may be empty
+     * @param dead cards that are known to be out of play, may be empty
+     * @param opponents number of additional players with unknown cards
+     * @param precision stop when the 95% confidence interval of every equity
+     * is within plus or minus this percentage
+     * @param millis stop when this time budget in milliseconds is spent
+     */
+    public Equity simulate(Card hands[][], Collection<Card> board, Collection<Card> dead,
+            int opponents, double precision, long millis) {
+        long holecards[] = new long[hands.length];
+        for (int i = 0; i < hands.length; i++) {
+            holecards[i] = mask(hands[i]);
+        }
+        return simulate(holecards, mask(board.toArray(new Card[0])), mask(dead.toArray(new Card[0])),
+                opponents, precision, millis);
+    }
+
+    /**
+     * @param hands card masks of the hole cards of the players with known
+     * cards, see {@link Card}
+     * @param board card mask of the community cards dealt so far
+     * @param dead card mask of cards that are known to be out of play
+     * @param opponents number of additional players with unknown cards
+     * @param precision stop when the 95% confidence interval of every equity
+     * is within plus or minus this percentage
+     * @param millis stop when this time budget in milliseconds is spent
+     */
+    public Equity simulate(long hands[], long board, long dead, int opponents, double precision, long millis) {
+        Setup setup = new Setup(hands, board, dead, opponents);
+        long deadline = System.nanoTime() + millis * 1000000L;
+        Tally total = new Tally(hands.length);
+        long round = FIRST_ROUND;
+        double error;
+        while (true) {
+            long start = System.nanoTime();
+            total.add(pool.invoke(new Runouts(setup, round)));
+            error = total.error();
+            long now = System.nanoTime();
+            if (100 * error <= precision || now >= deadline) {
+                break;
+            }
+            // double the round, but do not run past the deadline
+            double perTrial = (double) (now - start) / round;
+            round = Math.max(LEAF_TRIALS, Math.min(2 * round, (long) ((deadline - now) / perTrial)));
+        }
+        return new Equity(total.trials, total.wins, total.ties, total.shares, error);
+    }
+
+    /**
+     * Computes the exact equity by evaluating every remaining runout of the
+     * board, up to C(48,5) = 1712304 runouts for two players before the flop.
+     *
+     * @param hands hole cards of the players
+     * @param board community cards dealt so far, may be empty
+     * @param dead cards that are known to be out of play, may be empty
+     */
+    public Equity enumerate(Card hands[][], Collection<Card> board, Collection<Card> dead) {
+        long holecards[] = new long[hands.length];
+        for (int i = 0; i < hands.length; i++) {
+            holecards[i] = mask(hands[i]);
+        }
+        return enumerate(holecards, mask(board.toArray(new Card[0])), mask(dead.toArray(new Card[0])));
+    }
+
+    /**
+     * Computes the exact equity by evaluating every remaining runout of the
+     * board, up to C(48,5) = 1712304 runouts for two players before the flop.
+     *
+     * @param hands card masks of the hole cards of the players, see
+     * {@link Card}
+     * @param board card mask of the community cards dealt so far
+     * @param dead card mask of cards that are known to be out of play
+     */
+    public Equity enumerate(long hands[], long board, long dead) {
+        Setup setup = new Setup(hands, board, dead, 0);
+        int missing = 5 - setup.boardcards;
+        Tally total = missing == 0
+                ? new Boards(setup, 0, 1).compute()
+                : pool.invoke(new Boards(setup, 0, setup.remaining.length - missing + 1));
+        return new Equity(total.trials, total.wins, total.ties, total.shares, 0);
+    }
+
+    static long mask(Card cards[]) {
+        long mask = 0;
+        for (Card card : cards) {
+            mask |= card.mask();
+        }
+        return mask;
+    }
+
+    /**
+     * The known cards of a calculation, validated and converted to card
+     * indices once, shared read-only by all tasks.
+     */
+    static final class Setup {
+
+        final int players;
+        final int opponents;
+        final int holecards[];
+        final long board;
+        final long known; // hole cards, board and dead cards
+        final int boardcards;
+        final int remaining[];
+
+        Setup(long hands[], long board, long dead, int opponents) {
+            if (hands.length + opponents < 2) {
+                throw new IllegalArgumentException("Equity needs at least two players");
+            }
+            if (Long.bitCount(board) > 5) {
+                throw new IllegalArgumentException("A board has at most 5 cards");
+            }
+            long known = board | dead;
+            this.players = hands.length;
+            this.opponents = opponents;
+            this.holecards = new int[2 * (players + opponents)];
+            for (int i = 0; i < players; i++) {
+                if (Long.bitCount(hands[i]) != 2 || (hands[i] & known) != 0) {
+                    throw new IllegalArgumentException("Player " + i + " must have two cards that are not already used");
+                }
+                known |= hands[i];
+                holecards[2 * i] = Long.numberOfTrailingZeros(hands[i]);
+                holecards[2 * i + 1] = 63 - Long.numberOfLeadingZeros(hands[i]);
+            }
+            this.board = board;
+            this.known = known;
+            this.boardcards = Long.bitCount(board);
+            long rest = ~known & ((1L << Card.CARDS) - 1);
+            if (Long.bitCount(rest) < 5 - boardcards + 2 * opponents) {
+                throw new IllegalArgumentException("Not enough cards left to deal");
+            }
+            remaining = new int[Long.bitCount(rest)];
+            for (int i = 0; rest != 0; rest &= rest - 1) {
+                remaining[i++] = Long.numberOfTrailingZeros(rest);
+            }
+        }
+    }
+
+    /**
+     * Counters for a number of showdowns.
+     */
+    static final class Tally {
+
+        long trials;
+        final long wins[];
+        final long ties[];
+        final double shares[];
+        final double squares[]; // sum of squared shares, for the variance
+
+        Tally(int players) {
+            wins = new long[players];
+            ties = new long[players];
+            shares = new double[players];
+            squares = new double[players];
+        }
+
+        /**
+         * Counts a showdown between the known players and opponents.
+         */
+        void showdown(int strengths[], int players, int opponents) {
+            int best = -1;
+            int winners = 0;
+            for (int i = 0; i < players + opponents; i++) {
+                if (strengths[i] > best) {
+                    best = strengths[i];
+                    winners = 1;
+                } else if (strengths[i] == best) {
+                    winners++;
+                }
+            }
+            trials++;
+            for (int i = 0; i < players; i++) {
+                if (strengths[i] == best) {
+                    double share = 1.0 / winners;
+                    if (winners == 1) {
+                        wins[i]++;
+                    } else {
+                        ties[i]++;
+                    }
+                    shares[i] += share;
+                    squares[i] += share * share;
+                }
+            }
+        }
+
+        void add(Tally t) {
+            trials += t.trials;
+            for (int i = 0; i < wins.length; i++) {
+                wins[i] += t.wins[i];
+                ties[i] += t.ties[i];
+                shares[i] += t.shares[i];
+                squares[i] += t.squares[i];
+            }
+        }
+
+        /**
+         * @return the largest half-width of the 95% confidence interval of
+         * the equity of the players
+         */
+        double error() {
+            double error = 0;
+            for (int i = 0; i < wins.length; i++) {
+                double mean = shares[i] / trials;
+                double variance = Math.max(0, squares[i] / trials - mean * mean);
+                error = Math.max(error, 1.96 * Math.sqrt(variance / trials));
+            }
+            return error;
+        }
+    }
+
+    /**
+     * Enumerates all runouts of which the first card lies in a range of
+     * positions in the remaining cards, the range is split in halves until
+     * it holds a single first card. The following cards are chosen from the
+     * positions after the first, so every runout is counted once.
+     */
+    @SuppressWarnings("serial") // never serialized
+    private static final class Boards extends RecursiveTask<Tally> {
+
+        private final Setup setup;
+        private final int from;
+        private final int to;
+
+        Boards(Setup setup, int from, int to) {
+            this.setup = setup;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (to - from > 1) {
+                int half = (from + to) >>> 1;
+                Boards first = new Boards(setup, from, half);
+                first.fork();
+                Tally tally = new Boards(setup, half, to).compute();
+                tally.add(first.join());
+                return tally;
+            }
+            int missing = 5 - setup.boardcards;
+            // one partial board per number of cards added, so each level
+            // adds a single card to the board of the level before
+            PartialHand boards[] = new PartialHand[missing + 1];
+            for (int i = 0; i <= missing; i++) {
+                boards[i] = new PartialHand();
+            }
+            boards[0].add(setup.board);
+            int strengths[] = new int[setup.players];
+            Tally tally = new Tally(setup.players);
+            if (missing == 0) {
+                showdown(boards[0], strengths, tally);
+            } else {
+                boards[1].set(boards[0]);
+                boards[1].add(setup.remaining[from]);
+                enumerate(boards, 1, from + 1, strengths, tally);
+            }
+            return tally;
+        }
+
+        private void enumerate(PartialHand boards[], int depth, int next, int strengths[], Tally tally) {
+            if (depth == boards.length - 1) {
+                showdown(boards[depth], strengths, tally);
+                return;
+            }
+            int remaining[] = setup.remaining;
+            // leave enough cards for the remaining levels
+            int last = remaining.length - (boards.length - 1 - depth);
+            for (int i = next; i <= last; i++) {
+                boards[depth + 1].set(boards[depth]);
+                boards[depth + 1].add(remaining[i]);
+                enumerate(boards, depth + 1, i + 1, strengths, tally);
+            }
+        }
+
+        private void showdown(PartialHand board, int strengths[], Tally tally) {
+            board.evaluate(setup.holecards, strengths, setup.players);
+            tally.showdown(strengths, setup.players, 0);
+        }
+    }
+
+    /**
+     * Deals a number of random runouts, split in halves until small enough
+     * to run on one thread.
+     */
+    @SuppressWarnings("serial") // never serialized
+    private static final class Runouts extends RecursiveTask<Tally> {
+
+        private final Setup setup;
+        private final long trials;
+
+        Runouts(Setup setup, long trials) {
+            this.setup = setup;
+            this.trials = trials;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (trials > LEAF_TRIALS) {
+                Runouts first = new Runouts(setup, trials / 2);
+                first.fork();
+                Tally tally = new Runouts(setup, trials - trials / 2).compute();
+                tally.add(first.join());
+                return tally;
+            }
+            Deck deck = new Deck(ThreadLocalRandom.current());
+            deck.remove(setup.known);
+            int players = setup.players;
+            int opponents = setup.opponents;
+            int holecards[] = setup.holecards.clone();
+            int strengths[] = new int[players + opponents];
+            int missing = 5 - setup.boardcards;
+            PartialHand known = new PartialHand(setup.board);
+            PartialHand board = new PartialHand();
+            Tally tally = new Tally(players);
+            for (long t = 0; t < trials; t++) {
+                deck.reset();
+                board.set(known);
+                for (int i = 0; i < missing; i++) {
+                    board.add(deck.dealCardIndex());
+                }
+                for (int i = 2 * players; i < holecards.length; i++) {
+                    holecards[i] = deck.dealCardIndex();
+                }
+                board.evaluate(holecards, strengths, players + opponents);
+                tally.showdown(strengths, players, opponents);
+            }
+            return tally;
+        }
+    }
+}
@@ -8,15 +8,21 @@ public final class Event {
     public final Player player;
     public final EVENTTYPE type;
     public final int bidLevel; // total amount put in by player (so not just the raised amount)
+    public final boolean timeout; // the player did not decide in time, so passed or folded
 
     public Event(Player player, EVENTTYPE type, int total) {
+        this(player, type, total, false);
+    }
+
+    public Event(Player player, EVENTTYPE type, int total, boolean timeout) {
         this.player = player;
         this.type = type;
         this.bidLevel = total;
+        this.timeout = timeout;
     }
     
     @Override
     public String toString() {
-        return player.toString() + " " + type.toString() + " " + bidLevel; 
+        return player.toString() + " " + type.toString() + " " + bidLevel + (timeout ? " (timeout)" : ""); 
     }
 }
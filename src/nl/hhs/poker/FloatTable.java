@@ -0,0 +1,127 @@
+package nl.hhs.poker;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A table of floats outside the Java heap, indexed by a long, for tables of
+ * hundreds of millions of entries that fit neither in an array nor in the
+ * heap. The floats are kept in direct buffers, or buffers mapped from a
+ * file, of at most 2^28 floats (1 GiB) each, so an entry is read and written
+ * with a shift, a mask and one buffer access, and the garbage collector never
+ * sees it. Allocated tables count against -XX:MaxDirectMemorySize.
+ * <p/>
+ * The entries are not read and written atomically: threads that add to the
+ * same entry at the same time may lose an addition, which the solver
+ * tolerates in exchange for updating without locks.
+ */
+final class FloatTable {
+
+    private static final int CHUNK_BITS = 28;
+    private static final int CHUNK = 1 << CHUNK_BITS;
+    private final ByteBuffer bytes[];
+    private final FloatBuffer floats[];
+    private final long size;
+
+    /**
+     * A table of the given size in direct memory, filled with 0
+     */
+    FloatTable(long size) {
+        this(new ByteBuffer[chunks(size)], size);
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = ByteBuffer.allocateDirect(4 * chunkSize(i));
+            floats[i] = bytes[i].asFloatBuffer();
+        }
+    }
+
+    private FloatTable(ByteBuffer bytes[], long size) {
+        this.bytes = bytes;
+        this.floats = new FloatBuffer[bytes.length];
+        this.size = size;
+    }
+
+    private static int chunks(long size) {
+        return (int) ((size + CHUNK - 1) >>> CHUNK_BITS);
+    }
+
+    private int chunkSize(int chunk) {
+        return (int) Math.min(CHUNK, size - ((long) chunk << CHUNK_BITS));
+    }
+
+    /**
+     * Maps a table of the given size from the file, starting at the given
+     * position
+     */
+    static FloatTable map(FileChannel channel, FileChannel.MapMode mode, long position, long size) throws IOException {
+        FloatTable table = new FloatTable(new ByteBuffer[chunks(size)], size);
+        for (int i = 0; i < table.bytes.length; i++) {
+            table.bytes[i] = channel.map(mode, position + 4L * ((long) i << CHUNK_BITS), 4L * table.chunkSize(i));
+            table.floats[i] = table.bytes[i].asFloatBuffer();
+        }
+        return table;
+    }
+
+    long size() {
+        return size;
+    }
+
+    float get(long i) {
+        return floats[(int) (i >>> CHUNK_BITS)].get((int) i & (CHUNK - 1));
+    }
+
+    void set(long i, float value) {
+        floats[(int) (i >>> CHUNK_BITS)].put((int) i & (CHUNK - 1), value);
+    }
+
+    void add(long i, float value) {
+        FloatBuffer chunk = floats[(int) (i >>> CHUNK_BITS)];
+        int j = (int) i & (CHUNK - 1);
+        chunk.put(j, chunk.get(j) + value);
+    }
+
+    /**
+     * Writes all entries to the channel at its position
+     */
+    void write(FileChannel channel) throws IOException {
+        write(bytes, channel);
+    }
+
+    /**
+     * Reads all entries from the channel at its position
+     */
+    void read(FileChannel channel) throws IOException {
+        read(bytes, channel);
+    }
+
+    /**
+     * Writes the chunks of a table to the channel at its position, also used
+     * by {@link DoubleTable}
+     */
+    static void write(ByteBuffer chunks[], FileChannel channel) throws IOException {
+        for (ByteBuffer chunk : chunks) {
+            ByteBuffer view = chunk.duplicate();
+            view.clear();
+            while (view.hasRemaining()) {
+                channel.write(view);
+            }
+        }
+    }
+
+    /**
+     * Reads the chunks of a table from the channel at its position
+     */
+    static void read(ByteBuffer chunks[], FileChannel channel) throws IOException {
+        for (ByteBuffer chunk : chunks) {
+            ByteBuffer view = chunk.duplicate();
+            view.clear();
+            while (view.hasRemaining()) {
+                if (channel.read(view) < 0) {
+                    throw new EOFException("The file ends before the table");
+                }
+            }
+        }
+    }
+}
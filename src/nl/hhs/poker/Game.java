@@ -1,12 +1,24 @@
 package nl.hhs.poker;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.Comparator;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.RandomAccess;
 import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * All players are dealt 2 cards they hold in hand and how to noone. For a true
@@ -26,51 +38,325 @@ import java.util.TreeSet;
  */
 public final class Game {
 
-    private static final int COMMUNITY_CARDS = 5;
+    static final int COMMUNITY_CARDS = 5;
     private final Deck deck;
+    private final long seed;
+    private final GameListener listeners[];
     private TreeMap<ComparableHand, Player> showdown;
-    private final ArrayList<Card> communitycards = new ArrayList();
+    private final int communitycards[] = new int[COMMUNITY_CARDS];
+    private int communitycount = 0;
+    private long communitymask = 0;
+    private static final EVENTTYPE eventtypes[] = EVENTTYPE.values();
     private final ArrayList<Player> playersLeftInGame;
-    private final HashMap<Player, Event> lastEvent = new HashMap();
-    private final ArrayList<Event> eventHistory = new ArrayList();
+    private final Player seats[]; // the players in the order they were dealt
+    private final Hand hands[]; // per seat
+    private final HandState handStates[]; // per seat, created when a player first asks for it
+    // event history as parallel arrays, Event objects are only created when asked for
+    private int eventSeat[] = new int[32];
+    private int eventType[] = new int[32];
+    private int eventBidLevel[] = new int[32];
+    private boolean eventTimeout[] = new boolean[32];
+    private int eventCount = 0;
+    private Event events[] = new Event[0];
+    // guards the events, community cards and hand states when decisions run
+    // on other threads, with a timeout: one that was abandoned keeps reading
+    // the game after the game moved on, see decide
+    private final Object shared = new Object();
+    // read-only views handed out to players, so no copies are made per call
+    private final List<Player> playersView;
+    private final List<Event> historyView = new EventList();
+    private final List<Card> communityView = new CommunityList();
+    // last event per seat: the EVENTTYPE ordinal (-1 for none), bid level and index in history
+    private final int lastAction[];
+    private final int bidLevel[];
+    private final int lastEvent[];
+    // running totals, updated by addEvent so the betting loop reads them in constant time
+    private final int chips[]; // chips per seat at the start of the game
+    private final int byChips[]; // seats ordered by chips, most first
+    private final boolean folded[];
+    private int maxBidLevel = 0;
+    private int pot = 0;
+    private int open; // seats that have not folded and did not announce all-in
+    private int openAtMax; // of the open seats, the ones at the maximum bid level
+    private int above; // the first seats in byChips, that have more chips than the maximum bid level
+    private int foldedAbove; // folded seats among those
     private int blind;
     private Player bigblind;
     private Player smallblind;
     private boolean isshowdown = false;
+    private Player winner;
+    private long decisionTimeout = 0; // in milliseconds, 0 for none
+    private boolean timedOut; // the last decision was not made in time
+    private long decisionCpu; // CPU time of the last decision, -1 if not measured
+    private static final ExecutorService deciders = Executors.newVirtualThreadPerTaskExecutor();
+    // a virtual thread has no CPU time, so decisions that measure it, only a
+    // few, run on platform threads
+    private static final ExecutorService measuredDeciders = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "measured-decision");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
 
     public Game(Collection<Player> players) {
-        deck = new Deck();
+        this(players, new Random().nextLong());
+    }
+
+    /**
+     * @param seed the cards that are dealt only depend on the seed, so with
+     * the same players and decisions the game is played the same
+     */
+    public Game(Collection<Player> players, long seed) {
+        this(players, new Deck(), seed, new GameListener[0]);
+    }
+
+    /**
+     * @param listeners are told about every event and card of this game, in
+     * the given order, e.g. a {@link GameEventPublisher}
+     */
+    public Game(Collection<Player> players, long seed, GameListener... listeners) {
+        this(players, new Deck(), seed, listeners);
+    }
+
+    /**
+     * @param deck deck to deal the cards from, which is reset with the seed
+     * so it can be reused for many games
+     * @param listeners are told about every event and card of this game
+     */
+    Game(Collection<Player> players, Deck deck, long seed, GameListener listeners[]) {
+        this.deck = deck;
+        this.seed = seed;
+        this.listeners = listeners.clone();
+        deck.reset(seed);
         playersLeftInGame = new ArrayList(players);
+        seats = playersLeftInGame.toArray(new Player[0]);
+        // created up front, decisions of other seats may run on other threads
+        handStates = new HandState[seats.length];
+        playersView = Collections.unmodifiableList(Arrays.asList(seats));
+        lastAction = new int[seats.length];
+        bidLevel = new int[seats.length];
+        lastEvent = new int[seats.length];
+        hands = new Hand[seats.length];
+        Arrays.fill(lastAction, -1);
+        chips = new int[seats.length];
+        folded = new boolean[seats.length];
+        Integer order[] = new Integer[seats.length];
+        for (int seat = 0; seat < seats.length; seat++) {
+            chips[seat] = seats[seat].chipsOwned();
+            order[seat] = seat;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Integer.compare(chips[b], chips[a]);
+            }
+        });
+        byChips = new int[seats.length];
+        for (int i = 0; i < seats.length; i++) {
+            byChips[i] = order[i];
+            if (chips[order[i]] > 0) {
+                above++;
+            }
+        }
+        open = seats.length;
+        openAtMax = seats.length;
         setBlinds();
         deal();
+        for (GameListener listener : listeners) {
+            listener.gameStarted(this);
+        }
+        postBlinds();
     }
 
     /**
      * Deal each player a Hand of cards
      */
     private void deal() {
-        for (Player player : playersLeftInGame) {
-            Hand hand = new Hand(deck);
-            player.setHand(this, hand);
+        for (int seat = 0; seat < seats.length; seat++) {
+            hands[seat] = new Hand(deck);
+            seats[seat].setHand(this, hands[seat], seat);
         }
     }
 
     /**
-     * @return List of all players
+     * @return the seed the cards of this game were dealt with
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return read-only List of all players, in the order they were dealt
      */
-    public ArrayList<Player> getPlayers() {
-        return new ArrayList(lastEvent.keySet());
+    public List<Player> getPlayers() {
+        return playersView;
     }
 
     /**
      * Add an event to history, and sets it as lastevent for the player. The
      * events contain information on bets made, money put in by binds, player
      * status (e.g. fold, all-in), and when the game is finished the winner(s).
+     * The event is only recorded in arrays, which grow by doubling, so no
+     * objects are created per event. The running totals are updated here as
+     * well: bid levels never go down, so the maximum only moves up, and the
+     * seats that still have chips above it are found by walking down the seats
+     * ordered by chips, which costs constant time per event on average.
+     */
+    private final void addEvent(int seat, EVENTTYPE type, int total) {
+        addEvent(seat, type, total, false);
+    }
+
+    /**
+     * @param timeout the player passed or folded because the decision took
+     * too long
+     */
+    private final void addEvent(int seat, EVENTTYPE type, int total, boolean timeout) {
+        int event;
+        if (decisionTimeout > 0) {
+            synchronized (shared) {
+                event = record(seat, type, total, timeout);
+            }
+        } else {
+            event = record(seat, type, total, timeout);
+        }
+        if (isOpen(seat)) {
+            open--;
+            if (bidLevel[seat] == maxBidLevel) {
+                openAtMax--;
+            }
+        }
+        pot += total - bidLevel[seat];
+        lastAction[seat] = type.ordinal();
+        bidLevel[seat] = total;
+        lastEvent[seat] = event;
+        if (total > maxBidLevel) {
+            // no open seat is at the new maximum before this one
+            maxBidLevel = total;
+            openAtMax = 0;
+            while (above > 0 && chips[byChips[above - 1]] <= maxBidLevel) {
+                if (folded[byChips[--above]]) {
+                    foldedAbove--;
+                }
+            }
+        }
+        if (type == EVENTTYPE.FOLD && !folded[seat]) {
+            folded[seat] = true;
+            if (chips[seat] > maxBidLevel) {
+                foldedAbove++;
+            }
+        }
+        if (isOpen(seat)) {
+            open++;
+            if (total == maxBidLevel) {
+                openAtMax++;
+            }
+        }
+        for (GameListener listener : listeners) {
+            listener.eventAdded(this, seat, type, total, timeout);
+        }
+    }
+
+    /**
+     * @return the index of the event, written to the arrays of events
+     */
+    private int record(int seat, EVENTTYPE type, int total, boolean timeout) {
+        if (eventCount == eventSeat.length) {
+            eventSeat = Arrays.copyOf(eventSeat, 2 * eventCount);
+            eventType = Arrays.copyOf(eventType, 2 * eventCount);
+            eventBidLevel = Arrays.copyOf(eventBidLevel, 2 * eventCount);
+            eventTimeout = Arrays.copyOf(eventTimeout, 2 * eventCount);
+        }
+        eventSeat[eventCount] = seat;
+        eventType[eventCount] = type.ordinal();
+        eventBidLevel[eventCount] = total;
+        eventTimeout[eventCount] = timeout;
+        return eventCount++;
+    }
+
+    private boolean isOpen(int seat) {
+        return !folded[seat] && lastAction[seat] != EVENTTYPE.ALLIN.ordinal();
+    }
+
+    /**
+     * @return the i-th Event in history, created on first use
+     */
+    private Event event(int i) {
+        if (decisionTimeout > 0) {
+            synchronized (shared) {
+                return createEvent(i);
+            }
+        }
+        return createEvent(i);
+    }
+
+    private Event createEvent(int i) {
+        Event created[] = events;
+        if (created.length <= i) {
+            created = Arrays.copyOf(created, Math.max(i + 1, eventSeat.length));
+            events = created;
+        }
+        if (created[i] == null) {
+            created[i] = new Event(seats[eventSeat[i]], eventtypes[eventType[i]], eventBidLevel[i], eventTimeout[i]);
+        }
+        return created[i];
+    }
+
+    /**
+     * @return total amount put in by the player on the given seat
+     */
+    final int getBidLevel(int seat) {
+        return bidLevel[seat];
+    }
+
+    /**
+     * @return card mask of the hole cards of the player on the given seat,
+     * for recording the game, not for players
+     */
+    final long getHoleCards(int seat) {
+        return hands[seat].getMask();
+    }
+
+    /**
+     * @return the state of the hand of the player on the given seat, brought
+     * up to date with the community cards dealt since it was last asked for
+     */
+    final HandState getHandState(int seat) {
+        if (decisionTimeout > 0) {
+            synchronized (shared) {
+                return updateHandState(seat);
+            }
+        }
+        return updateHandState(seat);
+    }
+
+    private HandState updateHandState(int seat) {
+        HandState state = handStates[seat];
+        if (state == null) {
+            state = new HandState(hands[seat].getMask());
+            handStates[seat] = state;
+        }
+        for (int i = state.getCommunityCount(); i < communitycount; i++) {
+            state.add(communitycards[i]);
+        }
+        return state;
+    }
+
+    /**
+     * @return chips the player on the given seat owned when the game started
+     */
+    final int getStartChips(int seat) {
+        return chips[seat];
+    }
+
+    /**
+     * @return last action of the player on the given seat, or null if the
+     * player has no Event yet
      */
-    private final void addEvent(Player player, EVENTTYPE type, int total) {
-        Event event = new Event(player, type, total);
-        eventHistory.add(event);
-        lastEvent.put(player, event);
+    final EVENTTYPE getLastAction(int seat) {
+        int action = lastAction[seat];
+        return action < 0 ? null : eventtypes[action];
     }
 
     /**
@@ -109,9 +395,15 @@ public final class Game {
         bigblind = playersLeftInGame.get(playersLeftInGame.size() - 1);
         // small blind is the prior to last player to bet
         smallblind = playersLeftInGame.get(playersLeftInGame.size() - 2);
+    }
 
-        addEvent(smallblind, EVENTTYPE.SMALLBLIND, Math.min(smallblind.chipsOwned(), blind));
-        addEvent(bigblind, EVENTTYPE.BIGBLIND, Math.min(bigblind.chipsOwned(), blind * 2));
+    /**
+     * The small and big blind put in their blinds, or all they have if that
+     * is less.
+     */
+    private void postBlinds() {
+        addEvent(seats.length - 2, EVENTTYPE.SMALLBLIND, Math.min(smallblind.chipsOwned(), blind));
+        addEvent(seats.length - 1, EVENTTYPE.BIGBLIND, Math.min(bigblind.chipsOwned(), blind * 2));
     }
 
     /**
@@ -156,34 +448,51 @@ public final class Game {
             while (lastRaiseCounter-- > 0) {
                 // remove player from list
                 Player player = playersLeftInGame.remove(0);
+                int seat = player.getSeat();
 
-                Event lastPlayerEvent = lastEvent.get(player);
                 int playerChipsOwned = player.chipsOwned();
-                int playerLastBidLevel = player.getPlayerBidLevel();
+                int playerLastBidLevel = bidLevel[seat];
                 if (playerChipsOwned <= playerLastBidLevel) {
                     playersLeftInGame.add(player);
                     // player is already all in
                 } else {
-                    int raise = player.raise(gameBidLevel);
+                    // measured only when DecisionStats are enabled
+                    DecisionStats stats = null;
+                    if (DecisionStats.isEnabled() && player.getDecisionStats().sample()) {
+                        stats = player.getDecisionStats();
+                    }
+                    long start = 0;
+                    if (stats != null) {
+                        start = System.nanoTime();
+                    }
+                    int raise = decide(player, gameBidLevel, stats != null && stats.sampleCpu());
+                    boolean timeout = timedOut;
+                    if (stats != null) {
+                        start = System.nanoTime() - start;
+                    }
                     // a player cannot bet more than they have
                     int newPlayerBidLevel = (int) Math.min((long) playerLastBidLevel + raise, playerChipsOwned);
+                    EVENTTYPE action;
                     if (newPlayerBidLevel == playerChipsOwned) {
                         //  is all in
                         playersLeftInGame.add(player);
-                        addEvent(player, EVENTTYPE.ALLIN, newPlayerBidLevel);
+                        addEvent(seat, action = EVENTTYPE.ALLIN, newPlayerBidLevel);
                     } else if (newPlayerBidLevel < gameBidLevel) {
-                        addEvent(player, EVENTTYPE.FOLD, playerLastBidLevel);
+                        addEvent(seat, action = EVENTTYPE.FOLD, playerLastBidLevel, timeout);
                         // player folds
                     } else if (newPlayerBidLevel == gameBidLevel) {
-                        EVENTTYPE passOrCall = (raise == 0) ? EVENTTYPE.PASS : EVENTTYPE.CALL;
-                        addEvent(player, passOrCall, newPlayerBidLevel);
+                        action = (raise == 0) ? EVENTTYPE.PASS : EVENTTYPE.CALL;
+                        addEvent(seat, action, newPlayerBidLevel, timeout);
                         playersLeftInGame.add(player);
                         // pass or call
                     } else {
                         // player raises
-                        addEvent(player, EVENTTYPE.RAISE, newPlayerBidLevel);
+                        addEvent(seat, action = EVENTTYPE.RAISE, newPlayerBidLevel);
                         playersLeftInGame.add(player);
                     }
+                    if (stats != null) {
+                        stats.record(start, decisionCpu, action);
+                    }
                     if (newPlayerBidLevel > gameBidLevel) {
                         // a player raised so now the other players get one more bet
                         lastRaiseCounter = playersLeftInGame.size() - 1;
@@ -194,50 +503,151 @@ public final class Game {
         }
     }
 
+    /**
+     * @param millis time a player gets to decide on a bid, a player that
+     * takes longer passes or folds; 0 lets players take as long as they want
+     */
+    void setDecisionTimeout(long millis) {
+        decisionTimeout = millis;
+    }
+
+    /**
+     * Asks the player to bid. Without a timeout the player decides on the
+     * thread of the game, otherwise on a virtual thread, so a player that
+     * is slow or stuck only costs the timeout and no platform thread. When
+     * the time is up the decision is interrupted and abandoned: its bid is
+     * never counted, and the player is not asked again until it ends, every
+     * decision meanwhile times out at once. Until it ends it still reads the
+     * game, which moves on: the events, community cards and hand state are
+     * guarded so it reads them whole, but other values such as the bid
+     * levels may be out of date, and what the bot keeps in its own fields
+     * is up to the bot.
+     *
+     * @param measureCpu measure the CPU time of the decision in decisionCpu
+     * @return the raise, 0 if the player did not decide in time, which is
+     * also set in timedOut
+     */
+    private int decide(final Player player, final int gameBidLevel, final boolean measureCpu) {
+        timedOut = false;
+        decisionCpu = -1;
+        if (decisionTimeout <= 0) {
+            long cpu = measureCpu ? DecisionStats.cpuTime() : 0;
+            int raise = player.raise(gameBidLevel);
+            if (measureCpu) {
+                decisionCpu = DecisionStats.cpuTime() - cpu;
+            }
+            return raise;
+        }
+        if (player.isDeciding()) {
+            // an abandoned decision of the player is still running
+            return timeout(player);
+        }
+        player.setDeciding(true);
+        // claimed by the decision when it starts, or by the game when it
+        // abandons the decision before it started
+        final AtomicBoolean started = new AtomicBoolean();
+        final long cpu[] = {-1};
+        Future<Integer> decision = (measureCpu ? measuredDeciders : deciders).submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                if (!started.compareAndSet(false, true)) {
+                    return 0;
+                }
+                try {
+                    long start = measureCpu ? DecisionStats.cpuTime() : 0;
+                    int raise = player.decide(gameBidLevel);
+                    if (measureCpu) {
+                        cpu[0] = DecisionStats.cpuTime() - start;
+                    }
+                    return raise;
+                } finally {
+                    player.setDeciding(false);
+                }
+            }
+        });
+        try {
+            int raise = decision.get(decisionTimeout, TimeUnit.MILLISECONDS);
+            player.decided();
+            decisionCpu = cpu[0];
+            return raise;
+        } catch (TimeoutException ex) {
+            abandon(player, decision, started);
+            return timeout(player);
+        } catch (InterruptedException ex) {
+            abandon(player, decision, started);
+            Thread.currentThread().interrupt();
+            return timeout(player);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw new RuntimeException("Player " + player + " failed", ex.getCause());
+        }
+    }
+
+    private static void abandon(Player player, Future<Integer> decision, AtomicBoolean started) {
+        decision.cancel(true);
+        if (started.compareAndSet(false, true)) {
+            // the decision never runs
+            player.setDeciding(false);
+        }
+    }
+
+    /**
+     * @return 0, the raise of a player that did not decide in time
+     */
+    private int timeout(Player player) {
+        if (DecisionStats.isEnabled()) {
+            player.getDecisionStats().timeout();
+        }
+        timedOut = true;
+        return 0;
+    }
+
     /**
      * @return the maximum amount of money put in by any player, which is the
      * amount that other players have to meet to stay in the game, or go all in
      * if they have less money.
      */
-    private int getMaxBidLevel() {
-        int maxBidLevel = 0;
-        for (Event event : lastEvent.values()) {
-            maxBidLevel = Math.max(maxBidLevel, event.bidLevel);
-        }
+    public int getMaxBidLevel() {
         return maxBidLevel;
     }
 
     /**
-     * @param bidlevel
-     * @return true, if there is more than one player that has not folded and
-     * did not go all in. Only then a new round of bids is required.
+     * @return number of players that have not folded and have more chips than
+     * the maximum bid level, so they can still raise
+     */
+    public int getActivePlayers() {
+        return above - foldedAbove;
+    }
+
+    /**
+     * @return total amount put in by the given player, the player's
+     * contribution to the pot
+     */
+    public int getBidLevel(Player player) {
+        return bidLevel[player.getSeat()];
+    }
+
+    /**
+     * @return true, if a player that has not folded and did not go all in
+     * still has to meet the maximum bid level, or if there is more than one
+     * player that can still raise. Only then a new round of bids is required.
      */
     private boolean moreBidsRequired() {
         if (playersLeftInGame.size() < 2)
             return false;
-        int count = 0;
-        int gameBidLevel = getMaxBidLevel();
-        for (Player player : playersLeftInGame) {
-            EVENTTYPE lastEvent = player.getPlayerLastAction();
-            int lastBet = player.getPlayerBidLevel();
-            if (lastEvent != EVENTTYPE.ALLIN && lastBet < gameBidLevel)
-                return true;
-            if (gameBidLevel < player.chipsOwned()) {
-                count++;
-            }
-        }
-        return count > 1;
+        return open > openAtMax || getActivePlayers() > 1;
     }
 
     /**
-     * @return the total amount put in by all players
+     * @return the total amount put in by all players, the pot
      */
     public int sumput() {
-        int sumput = 0;
-        for (Event value : lastEvent.values()) {
-            sumput += value.bidLevel;
-        }
-        return sumput;
+        return pot;
     }
 
     /**
@@ -247,17 +657,49 @@ public final class Game {
      * until the total number of community cards is the given parameter.
      */
     public void dealCommunityCards(int cards) {
-        for (int i = communitycards.size(); i < cards; i++) {
-            communitycards.add(deck.dealCard());
+        while (communitycount < cards) {
+            int card = deck.dealCardIndex();
+            if (decisionTimeout > 0) {
+                synchronized (shared) {
+                    addCommunityCard(card);
+                }
+            } else {
+                addCommunityCard(card);
+            }
+            for (GameListener listener : listeners) {
+                listener.cardDealt(this, card);
+            }
         }
     }
 
+    private void addCommunityCard(int card) {
+        communitycards[communitycount++] = card;
+        communitymask |= Card.mask(card);
+    }
+
+    /**
+     * @return A read-only List of all events in the current game, allowing to
+     * get information on which player made what actions. The List is a view
+     * that grows with the game, it is not copied.
+     */
+    public List<Event> getEventHistory() {
+        return historyView;
+    }
+
+    /**
+     * @return number of events in the current game so far, a bot can
+     * remember this to read only the new events next time
+     */
+    public int getEventCount() {
+        return eventCount;
+    }
+
     /**
-     * @return A List of all events in the current game, allowing to get information
-     * on which player made what actions.
+     * @return read-only view on the events from index first up to the current
+     * last event, see {@link #getEventCount()}
      */
-    public ArrayList<Event> getEventHistory() {
-        return (ArrayList) eventHistory.clone();
+    public List<Event> getEventsSince(int first) {
+        return historyView.subList(first, eventCount);
     }
 
     /**
@@ -265,16 +707,28 @@ public final class Game {
      * for.
      */
     public Event getLastEvent(Player player) {
-        return lastEvent.get(player);
+        int seat = player.getSeat();
+        if (seat >= seats.length || seats[seat] != player || lastAction[seat] < 0) {
+            return null;
+        }
+        return event(lastEvent[seat]);
     }
 
     /**
      * @return A list of cards in the middle of the table that can be use by any
      * player to make the best possible 5 card combination with the cards in
-     * hand. This best combination is used to determine the winner.
+     * hand. This best combination is used to determine the winner. The List
+     * is a read-only view that grows when cards are dealt.
+     */
+    public List<Card> getCommunityCards() {
+        return communityView;
+    }
+
+    /**
+     * @return card mask of the community cards dealt so far, see {@link Card}
      */
-    public ArrayList<Card> getCommunityCards() {
-        return (ArrayList) communitycards.clone();
+    public long getCommunityMask() {
+        return communitymask;
     }
 
     /**
@@ -286,132 +740,117 @@ public final class Game {
      * @return if there was no showdown, a single value with no Hand and the
      * Player that won, otherwise a list of all players that have shown their
      * cards during a showdown. The hands are sorted by value, i.e. the winner
-     * is listed first. Whether there is a winner or tie can also be queried by
+     * is listed first, and tied hands are listed next to each other. Whether there is a winner or tie can also be queried by
      * the lastEvent(Player) which contains WINNER or TIE as the winners last
      * events.
      */
     public TreeMap<ComparableHand, Player> getShowDown() {
         if (showdown == null) {
             showdown = new TreeMap();
-            if (playersLeftInGame.size() == 1) {
-                cashToWinner(playersLeftInGame.get(0));
-            } else {
+            int strengths[] = new int[seats.length];
+            if (playersLeftInGame.size() > 1) {
                 isshowdown = true; // so players show their cards
-                for (Player p : playersLeftInGame) {
-                    Hand hand = p.giveHand();
-                    ComparableHand comparableHand = new ComparableHand(this, p.giveHand());
-                    showdown.put(comparableHand, p);
-                }
-                TreeMap<ComparableHand, Player> winners = new TreeMap(showdown);
-                ComparableHand firsthand = winners.firstKey();
-                while (winners.lastEntry().getKey().compareTo(firsthand) > 0) {
-                    winners.remove(winners.lastKey());
+                int players = playersLeftInGame.size();
+                Hand shownHands[] = new Hand[players];
+                int holecards[] = new int[2 * players];
+                int shown[] = new int[players];
+                for (int i = 0; i < players; i++) {
+                    shownHands[i] = playersLeftInGame.get(i).giveHand();
+                    holecards[2 * i] = shownHands[i].getCardIndex(0);
+                    holecards[2 * i + 1] = shownHands[i].getCardIndex(1);
                 }
-                if (winners.size() == 1) {
-                    cashToWinner(winners.firstEntry().getValue());
-                } else {
-                    splitPot(winners);
+                // the community cards are evaluated once for all players
+                PartialHand board = new PartialHand(communitymask);
+                board.evaluate(holecards, shown, players);
+                for (int i = 0; i < players; i++) {
+                    Player p = playersLeftInGame.get(i);
+                    showdown.put(new ComparableHand(shownHands[i], communitymask | shownHands[i].getMask(), shown[i]), p);
+                    strengths[p.getSeat()] = shown[i];
                 }
             }
+            settle(strengths);
+            for (GameListener listener : listeners) {
+                listener.gameEnded(this);
+            }
         }
         return showdown;
     }
     
     /**
-     * @return return the Winner of this game, or null if the game has not ended or
-     * if there was a tie. In the last case the Events can be checked to see which players
-     * tied to win.
+     * @return return the Winner of the main pot of this game, or null if the
+     * game has not ended or if there was a tie. In the last case the Events
+     * can be checked to see which players tied to win.
      */
     public Player getWinner() {
-        for (Event event : lastEvent.values()) {
-            if (event.type == EVENTTYPE.WIN) {
-                return event.player;
-            }
-        }
-        return null;
+        return winner;
     }
 
     /**
-     * When there is a single winner, he/she takes the pot, taking into
-     * consideration that winners can never earn more money than what they
-     * gambled (for all-in).
+     * Divides the pot over the players that have not folded, see
+     * {@link SidePots}: a player can never win more from another player than
+     * what he put in himself (for all-in), the rest goes to the next best
+     * hand. Every player that won a pot gets a WIN Event, or a TIE Event when
+     * the pot was split, and then all cash is transferred at once.
      *
-     * @param winner
-     */
-    private void cashToWinner(Player winner) {
-        int maxbet = lastEvent.get(winner).bidLevel;
-        int prizemoney = 0;
-        for (Event event : lastEvent.values()) {
-            if (event.player != winner) {
-                Player loser = event.player;
-                int amount = Math.min(event.bidLevel, maxbet);
-                loser.transferCash(new CashTransfer(loser, -amount));
-                prizemoney += amount;
+     * @param strengths strength of the hand per seat of the players in the
+     * showdown
+     */
+    private void settle(int strengths[]) {
+        boolean eligible[] = new boolean[seats.length];
+        int best = -1;
+        for (Player player : playersLeftInGame) {
+            int seat = player.getSeat();
+            eligible[seat] = true;
+            best = Math.max(best, strengths[seat]);
+        }
+        int won[] = new int[seats.length];
+        int winners[] = new int[seats.length];
+        SidePots.award(bidLevel, strengths, eligible, won, winners);
+        for (int seat = 0; seat < seats.length; seat++) {
+            if (winners[seat] > 0) {
+                if (winners[seat] == 1 && strengths[seat] == best) {
+                    winner = seats[seat];
+                }
+                addEvent(seat, winners[seat] == 1 ? EVENTTYPE.WIN : EVENTTYPE.TIE, bidLevel[seat]);
+            }
+        }
+        for (int seat = 0; seat < seats.length; seat++) {
+            int amount = won[seat] - bidLevel[seat];
+            if (amount != 0) {
+                seats[seat].transferCash(new CashTransfer(seats[seat], amount));
             }
         }
-        winner.transferCash(new CashTransfer(winner, prizemoney));
-        addEvent(winner, EVENTTYPE.WIN, maxbet);
     }
 
-    /**
-     * When multiple winners tie, the winnings are split by the joint winners. A
-     * slight complication is that when players went all-in with an amount that
-     * is less that what a losing player put in, the winner cannot receive more
-     * than the amount he went all-in with.
-     *
-     * @param winners
-     */
-    private void splitPot(TreeMap<ComparableHand, Player> winners) {
-        TreeSet<Integer> maxwinamount = new TreeSet();
-        for (Player player : winners.values()) {
-            maxwinamount.add(lastEvent.get(player).bidLevel);
-            addEvent(player, EVENTTYPE.TIE, lastEvent.get(player).bidLevel);
-        }
-        HashMap<Player, Integer> owing = new HashMap();
-        for (Event event : lastEvent.values()) {
-            if (!winners.containsKey(event.player)) {
-                Player loser = event.player;
-                owing.put(loser, event.bidLevel);
+    private final class EventList extends AbstractList<Event> implements RandomAccess {
+
+        @Override
+        public Event get(int i) {
+            if (i < 0 || i >= eventCount) {
+                throw new IndexOutOfBoundsException("Event " + i + " of " + eventCount);
             }
+            return event(i);
         }
-        int amountAlreadyTaken = 0;
-        int split = maxwinamount.size();
-        for (int winamount : maxwinamount) {
-            if (winamount > amountAlreadyTaken) {
-                split = 0;
-                for (Player player : winners.values()) {
-                    int playerBet = lastEvent.get(player).bidLevel;
-                    if (playerBet >= winamount) {
-                        split++;
-                    }
-                }
-                for (Map.Entry<Player, Integer> owe : owing.entrySet()) {
-                    int amount = Math.min(owe.getValue(), winamount - amountAlreadyTaken);
-                    int splitamount = amount / split;
-                    for (Player player : winners.values()) {
-                        int playerBet = lastEvent.get(player).bidLevel;
-                        if (playerBet >= winamount) {
-                            player.transferCash(new CashTransfer(player, splitamount));
-                        }
-                    }
-                    int remainder = amount - split * splitamount;
-                    if (remainder > 0) {
-                        Player player = winners.firstEntry().getValue();
-                        player.transferCash(new CashTransfer(player, remainder));
-                    }
-                    owe.setValue(owe.getValue() - amount);
-                }
-                amountAlreadyTaken = winamount;
+
+        @Override
+        public int size() {
+            return eventCount;
+        }
+    }
+
+    private final class CommunityList extends AbstractList<Card> implements RandomAccess {
+
+        @Override
+        public Card get(int i) {
+            if (i < 0 || i >= communitycount) {
+                throw new IndexOutOfBoundsException("Card " + i + " of " + communitycount);
             }
+            return Card.valueOf(communitycards[i]);
         }
-        // losers must pay up, either what they have betted in total,
-        // or less if the winner(s) went all-in with less money
-        for (Map.Entry<Player, Integer> owe : owing.entrySet()) {
-            Player loser = owe.getKey();
-            int playerLastBet = lastEvent.get(loser).bidLevel;
-            int moneyNotGoneToWinners = owe.getValue();
-            int amountToPay = playerLastBet - moneyNotGoneToWinners;
-            loser.transferCash(new CashTransfer(loser, amountToPay));
+
+        @Override
+        public int size() {
+            return communitycount;
         }
     }
 
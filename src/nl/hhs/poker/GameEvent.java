@@ -0,0 +1,83 @@
+package nl.hhs.poker;
+
+/**
+ * Something that happened in a Game, as published by a
+ * {@link GameEventPublisher}. The event does not refer to the Game, the seed
+ * tells the games apart, so a subscriber that keeps events does not keep
+ * finished games.
+ */
+public final class GameEvent {
+
+    public enum Kind {
+
+        /**
+         * the hole cards are dealt, value is the number of seats
+         */
+        STARTED,
+        /**
+         * a blind is put in, type is SMALLBLIND or BIGBLIND and value the
+         * amount
+         */
+        BLIND,
+        /**
+         * a player decided, type is PASS, CALL, FOLD, ALLIN or RAISE and
+         * value the total amount the player is in for
+         */
+        ACTION,
+        /**
+         * a community card is dealt, value is the card index and cards the
+         * card mask of the community cards so far
+         */
+        CARD,
+        /**
+         * a player showed the cards, value is the strength of the best hand,
+         * see {@link HandEvaluator}, and cards the card mask of the hole cards
+         */
+        SHOWDOWN,
+        /**
+         * the chips of a player changed, value is the chips won, negative
+         * when lost, and type is WIN or TIE when the player won a pot and
+         * LOST otherwise
+         */
+        PAYOUT,
+        /**
+         * the game is over, all payouts were published
+         */
+        ENDED
+    }
+    public final Kind kind;
+    public final long seed; // of the game, see Game.getSeed()
+    public final int seat; // -1 when no player is involved
+    public final Player player; // null when no player is involved
+    public final EVENTTYPE type; // null when not given for the kind
+    public final int value;
+    public final long cards;
+    public final boolean timeout; // the player did not decide in time, so passed or folded
+
+    GameEvent(Kind kind, long seed, int seat, Player player, EVENTTYPE type, int value, long cards, boolean timeout) {
+        this.kind = kind;
+        this.seed = seed;
+        this.seat = seat;
+        this.player = player;
+        this.type = type;
+        this.value = value;
+        this.cards = cards;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case STARTED:
+                return "Game " + seed + " started with " + value + " players";
+            case CARD:
+                return "Card " + Card.valueOf(value);
+            case SHOWDOWN:
+                return player + " shows " + HandEvaluator.describe(value);
+            case ENDED:
+                return "Game " + seed + " ended";
+            default:
+                return player + " " + type + " " + value + (timeout ? " (timeout)" : "");
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package nl.hhs.poker;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Publishes what happens in the games it listens to as {@link GameEvent}s,
+ * so loggers, recorders and user interfaces can follow the games live:
+ * <pre>
+ * GameEventPublisher events = new GameEventPublisher();
+ * match.addListener(events);
+ * events.subscribe(subscriber);      // on the thread of the game
+ * events.subscribeAsync(subscriber); // on the executor
+ * </pre>
+ * A subscriber of {@link #subscribe(Flow.Subscriber)} gets the events on the
+ * thread that plays the game, while it plays. The events it did not request
+ * yet are kept, up to the buffer size; a subscriber that falls further
+ * behind is cancelled with an IllegalStateException, because the game
+ * cannot wait for its own thread.
+ * <p/>
+ * A subscriber of {@link #subscribeAsync(Flow.Subscriber)} gets the events
+ * on the executor through a buffer of its own, see {@link SubmissionPublisher}.
+ * When the buffer of an asynchronous subscriber is full the game waits until
+ * it takes the next event, so a slow subscriber slows the games down instead
+ * of missing events. The games must therefore not be played by the threads
+ * of the executor.
+ * <p/>
+ * No events are created while there are no subscribers.
+ */
+public final class GameEventPublisher implements Flow.Publisher<GameEvent>, GameListener, AutoCloseable {
+
+    private final int bufferSize;
+    private final CopyOnWriteArrayList<Direct> direct = new CopyOnWriteArrayList();
+    private final SubmissionPublisher<GameEvent> buffered;
+    private volatile boolean closed;
+
+    /**
+     * Publishes to asynchronous subscribers on the common fork/join pool,
+     * with buffers of {@link Flow#defaultBufferSize()}.
+     */
+    public GameEventPublisher() {
+        this(ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+    }
+
+    /**
+     * @param executor delivers the events to asynchronous subscribers
+     * @param bufferSize the number of events that are kept per subscriber
+     */
+    public GameEventPublisher(Executor executor, int bufferSize) {
+        this.bufferSize = bufferSize;
+        buffered = new SubmissionPublisher(executor, bufferSize);
+    }
+
+    /**
+     * Delivers the events to the subscriber on the thread that plays the
+     * game.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super GameEvent> subscriber) {
+        Direct subscription = new Direct(subscriber);
+        subscriber.onSubscribe(subscription);
+        if (closed) {
+            subscription.complete();
+        } else {
+            direct.add(subscription);
+        }
+    }
+
+    /**
+     * Delivers the events to the subscriber on the executor.
+     */
+    public void subscribeAsync(Flow.Subscriber<? super GameEvent> subscriber) {
+        buffered.subscribe(subscriber);
+    }
+
+    /**
+     * @return there is at least one subscriber
+     */
+    public boolean hasSubscribers() {
+        return !direct.isEmpty() || buffered.hasSubscribers();
+    }
+
+    /**
+     * Completes all subscribers once they have taken the events published so
+     * far; no more events are published.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Direct subscription : direct) {
+            subscription.complete();
+        }
+        buffered.close();
+    }
+
+    private void publish(GameEvent event) {
+        for (Direct subscription : direct) {
+            subscription.offer(event);
+        }
+        if (buffered.hasSubscribers()) {
+            // waits while the buffer of a subscriber is full
+            buffered.submit(event);
+        }
+    }
+
+    @Override
+    public void gameStarted(Game game) {
+        if (hasSubscribers() && !closed) {
+            publish(new GameEvent(GameEvent.Kind.STARTED, game.getSeed(), -1, null, null,
+                    game.getPlayers().size(), 0, false));
+        }
+    }
+
+    @Override
+    public void eventAdded(Game game, int seat, EVENTTYPE type, int total, boolean timeout) {
+        if (!hasSubscribers() || closed) {
+            return;
+        }
+        GameEvent.Kind kind;
+        switch (type) {
+            case SMALLBLIND:
+            case BIGBLIND:
+                kind = GameEvent.Kind.BLIND;
+                break;
+            case WIN:
+            case TIE:
+            case LOST:
+                // published as payouts when the game ends
+                return;
+            default:
+                kind = GameEvent.Kind.ACTION;
+        }
+        publish(new GameEvent(kind, game.getSeed(), seat, game.getPlayers().get(seat), type, total, 0, timeout));
+    }
+
+    @Override
+    public void cardDealt(Game game, int card) {
+        if (hasSubscribers() && !closed) {
+            publish(new GameEvent(GameEvent.Kind.CARD, game.getSeed(), -1, null, null,
+                    card, game.getCommunityMask(), false));
+        }
+    }
+
+    @Override
+    public void gameEnded(Game game) {
+        if (!hasSubscribers() || closed) {
+            return;
+        }
+        List<Player> players = game.getPlayers();
+        if (game.isShowDown()) {
+            long board = game.getCommunityMask();
+            for (int seat = 0; seat < players.size(); seat++) {
+                if (game.isShowDown(players.get(seat))) {
+                    long holecards = game.getHoleCards(seat);
+                    publish(new GameEvent(GameEvent.Kind.SHOWDOWN, game.getSeed(), seat, players.get(seat), null,
+                            HandEvaluator.evaluate(board | holecards), holecards, false));
+                }
+            }
+        }
+        for (int seat = 0; seat < players.size(); seat++) {
+            Player player = players.get(seat);
+            int won = player.chipsOwned() - game.getStartChips(seat);
+            EVENTTYPE type = game.getLastAction(seat);
+            if (type != EVENTTYPE.WIN && type != EVENTTYPE.TIE) {
+                type = EVENTTYPE.LOST;
+            }
+            if (won != 0 || type != EVENTTYPE.LOST) {
+                publish(new GameEvent(GameEvent.Kind.PAYOUT, game.getSeed(), seat, player, type, won, 0, false));
+            }
+        }
+        publish(new GameEvent(GameEvent.Kind.ENDED, game.getSeed(), -1, null, null, 0, 0, false));
+    }
+
+    /**
+     * The subscription of a subscriber that gets the events on the thread
+     * that plays the game, with the events it did not request yet.
+     */
+    private final class Direct implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super GameEvent> subscriber;
+        private final ArrayDeque<GameEvent> pending = new ArrayDeque();
+        private long demand;
+        private boolean cancelled;
+        private boolean completed;
+        private boolean draining; // so onNext can request more without recursion
+
+        Direct(Flow.Subscriber<? super GameEvent> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        synchronized void offer(GameEvent event) {
+            if (cancelled) {
+                return;
+            }
+            if (pending.size() == bufferSize) {
+                fail(new IllegalStateException("Subscriber " + subscriber + " did not request the last "
+                        + bufferSize + " events"));
+                return;
+            }
+            pending.add(event);
+            drain();
+        }
+
+        synchronized void complete() {
+            completed = true;
+            drain();
+        }
+
+        @Override
+        public synchronized void request(long n) {
+            if (cancelled) {
+                return;
+            }
+            if (n <= 0) {
+                fail(new IllegalArgumentException("A subscriber must request at least one event"));
+                return;
+            }
+            demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            drain();
+        }
+
+        @Override
+        public synchronized void cancel() {
+            cancelled = true;
+            pending.clear();
+            direct.remove(this);
+        }
+
+        private void fail(Throwable error) {
+            cancel();
+            subscriber.onError(error);
+        }
+
+        private void drain() {
+            if (draining) {
+                return;
+            }
+            draining = true;
+            try {
+                while (demand > 0 && !pending.isEmpty() && !cancelled) {
+                    demand--;
+                    subscriber.onNext(pending.poll());
+                }
+                if (completed && pending.isEmpty() && !cancelled) {
+                    cancel();
+                    subscriber.onComplete();
+                }
+            } catch (RuntimeException ex) {
+                // a subscriber must not throw, it loses its subscription
+                fail(ex);
+            } finally {
+                draining = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package nl.hhs.poker;
+
+/**
+ * Is told what happens in a Game while it is played, e.g. to record or
+ * count the games of a Match, see {@link Match#addListener(GameListener)}.
+ * The methods are called on the thread that plays the game, in the order
+ * things happen, so a listener must be quick and should not keep the Game.
+ */
+public interface GameListener {
+
+    /**
+     * Called when the hole cards are dealt, before the blinds are put in.
+     */
+    void gameStarted(Game game);
+
+    /**
+     * Called for every Event, with the seat of the player, see
+     * {@link Game#getPlayers()}, the total amount the player is in for, and
+     * whether the player passed or folded because the decision took too long.
+     */
+    void eventAdded(Game game, int seat, EVENTTYPE type, int total, boolean timeout);
+
+    /**
+     * Called for every community card that is dealt.
+     *
+     * @param card index 0-51 of the card, see {@link Card#index()}
+     */
+    void cardDealt(Game game, int card);
+
+    /**
+     * Called when the winners are known and the cash is transferred.
+     */
+    void gameEnded(Game game);
+}
@@ -1,5 +1,9 @@
 package nl.hhs.poker;
 
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
 /**
  * A private Hand of 2 cards, seen only by the player that holds them.
  * @author jeroen
@@ -8,29 +12,49 @@ public final class Hand {
 
     private final static int MAX_CARD = 2;
     private final Deck deck;
-    private final Card cards[];
+    private final int cards[];
+    private final long mask;
+    private List<Card> view;
 
     protected Hand(Deck deck) {
         this.deck = deck;
-        cards = new Card[MAX_CARD];
+        cards = new int[MAX_CARD];
+        long mask = 0;
         for (int i = 0; i < MAX_CARD; i++) {
-            cards[i] = deck.dealCard();
+            cards[i] = deck.dealCardIndex();
+            mask |= Card.mask(cards[i]);
         }
+        this.mask = mask;
     }
 
     /**
-     * @return a copy of the cards, to avoid tempering with cards
+     * @return read-only view on the cards, to avoid tempering with cards
      */
-    public Card[] getCards() {
-        Card clone[] = new Card[cards.length];
-        System.arraycopy(cards, 0, clone, 0, MAX_CARD);
-        return clone;
+    public List<Card> getCards() {
+        if (view == null) {
+            view = new CardList();
+        }
+        return view;
+    }
+
+    /**
+     * @return index 0-51 of the i-th card in this hand
+     */
+    public int getCardIndex(int i) {
+        return cards[i];
+    }
+
+    /**
+     * @return card mask of the cards in this hand, see {@link Card}
+     */
+    public long getMask() {
+        return mask;
     }
 
     private Deck getDeck() {
         return deck;
     }
-    
+
     /**
      * @param hand
      * @return true if both hands were dealt from the same Deck, used to validate
@@ -39,4 +63,17 @@ public final class Hand {
     public boolean sameDeck(Hand hand) {
         return deck == hand.getDeck();
     }
+
+    private final class CardList extends AbstractList<Card> implements RandomAccess {
+
+        @Override
+        public Card get(int i) {
+            return Card.valueOf(cards[i]);
+        }
+
+        @Override
+        public int size() {
+            return MAX_CARD;
+        }
+    }
 }
@@ -0,0 +1,299 @@
+package nl.hhs.poker;
+
+/**
+ * Table driven evaluator that maps a set of up to 7 cards to a single int
+ * strength, so that a higher strength is a better hand and equal hands get
+ * the same strength. The evaluation does not allocate.
+ * <p/>
+ * When 5 or more cards have the same suit the hand is a (straight) flush, and
+ * the strength is looked up in a table indexed by the 13-bit face mask of that
+ * suit. With 7 cards or less, a flush rules out four of a kind and full
+ * house, so no other hand needs to be considered. Otherwise only the number
+ * of cards per face matters. These counts form a 13 digit base-5 number,
+ * which a perfect hash maps onto a dense index in a table that holds the
+ * strength of every possible combination of face counts.
+ * <p/>
+ * A strength holds the {@link RANK} ordinal in bits 20-23, and below it up to
+ * 5 FACE ordinals of 4 bits each that decide between hands of the same rank,
+ * most significant first (e.g. for a full house the three of a kind in bits
+ * 16-19 and the pair in bits 12-15). Unused faces are 0. So hands are ordered
+ * by a plain int comparison, and strengths can be kept in primitive arrays.
+ */
+public final class HandEvaluator {
+
+    public static final int MAX_CARDS = 7;
+
+    public static final int RANK_SHIFT = 20;
+    private static final RANK ranks[] = RANK.values();
+    private static final FACE faceValues[] = FACE.values();
+    private static final int HIGHCARD = RANK.HIGHCARD.ordinal();
+    private static final int ONEPAIR = RANK.ONEPAIR.ordinal();
+    private static final int TWOPAIR = RANK.TWOPAIR.ordinal();
+    private static final int THREEOFAKIND = RANK.THREEOFAKIND.ordinal();
+    private static final int STRAIGHT = RANK.STRAIGHT.ordinal();
+    private static final int FLUSH = RANK.FLUSH.ordinal();
+    private static final int FULLHOUSE = RANK.FULLHOUSE.ordinal();
+    private static final int FOUROFAKIND = RANK.FOUROFAKIND.ordinal();
+    private static final int STRAIGHTFLUSH = RANK.STRAIGHTFLUSH.ordinal();
+
+    private static final int DIGITS = 5;
+    private static final int flush[] = new int[1 << Card.FACES];
+    /**
+     * spreads a 13-bit face mask over 13 nibbles, so that adding the spread
+     * masks of the 4 suits gives the number of cards per face
+     */
+    private static final long spread[] = new long[1 << Card.FACES];
+    /**
+     * number of base-5 numbers with the given number of digits and digit sum
+     */
+    private static final int combinations[][] = new int[Card.FACES + 1][MAX_CARDS + 1];
+    /**
+     * perfect hash offset for a digit at a face position, given the digit
+     * sum of that face and all lower faces
+     */
+    private static final int offset[] = new int[Card.FACES * (MAX_CARDS + 1) * DIGITS];
+    /**
+     * start of the section in the nonflush table for a number of cards
+     */
+    private static final int base[] = new int[MAX_CARDS + 2];
+    private static final int nonflush[];
+
+    static {
+        combinations[0][0] = 1;
+        for (int length = 1; length <= Card.FACES; length++) {
+            for (int sum = 0; sum <= MAX_CARDS; sum++) {
+                for (int digit = 0; digit < DIGITS && digit <= sum; digit++) {
+                    combinations[length][sum] += combinations[length - 1][sum - digit];
+                }
+            }
+        }
+        for (int face = 0; face < Card.FACES; face++) {
+            for (int sum = 0; sum <= MAX_CARDS; sum++) {
+                int o = 0;
+                for (int digit = 0; digit < DIGITS; digit++) {
+                    offset[(face * (MAX_CARDS + 1) + sum) * DIGITS + digit] = o;
+                    if (digit <= sum) {
+                        o += combinations[face][sum - digit];
+                    }
+                }
+            }
+        }
+        for (int k = 0; k <= MAX_CARDS; k++) {
+            base[k + 1] = base[k] + combinations[Card.FACES][k];
+        }
+        nonflush = new int[base[MAX_CARDS + 1]];
+        fillNonFlush(Card.FACES - 1, 0, 0);
+
+        for (int faces = 0; faces < flush.length; faces++) {
+            for (int face = 0; face < Card.FACES; face++) {
+                if ((faces & (1 << face)) != 0) {
+                    spread[faces] |= 1L << (4 * face);
+                }
+            }
+            if (Integer.bitCount(faces) >= 5) {
+                int straight = straight(faces);
+                flush[faces] = straight >= 0
+                        ? strength(STRAIGHTFLUSH, straight, 1)
+                        : strength(FLUSH, top(faces, 5), 5);
+            }
+        }
+    }
+
+    private HandEvaluator() {
+    }
+
+    /**
+     * @param mask card mask of at most 7 cards, see {@link Card}
+     * @return strength of the best 5 card hand that can be made from the
+     * cards, a higher strength is a better hand
+     */
+    public static int evaluate(long mask) {
+        if (Long.bitCount(mask) > MAX_CARDS) {
+            throw new IllegalArgumentException("Cannot evaluate more than " + MAX_CARDS + " cards");
+        }
+        int s0 = Card.faces(mask, 0);
+        int s1 = Card.faces(mask, 1);
+        int s2 = Card.faces(mask, 2);
+        int s3 = Card.faces(mask, 3);
+        if (Integer.bitCount(s0) >= 5) {
+            return flush[s0];
+        }
+        if (Integer.bitCount(s1) >= 5) {
+            return flush[s1];
+        }
+        if (Integer.bitCount(s2) >= 5) {
+            return flush[s2];
+        }
+        if (Integer.bitCount(s3) >= 5) {
+            return flush[s3];
+        }
+        return evaluateFaces(spread[s0] + spread[s1] + spread[s2] + spread[s3], Long.bitCount(mask));
+    }
+
+    /**
+     * @return the category of the hand with the given strength
+     */
+    public static RANK rank(int strength) {
+        return ranks[strength >>> RANK_SHIFT];
+    }
+
+    /**
+     * @return ordinal of the i-th face (0-4) that decides between hands of the
+     * same rank, e.g. for one pair face 0 is the pair and 1-3 are the kickers
+     */
+    public static int kicker(int strength, int i) {
+        return (strength >>> (4 * (4 - i))) & 0xF;
+    }
+
+    /**
+     * @return a description of the hand with the given strength, e.g.
+     * "Full House K 7" or "Straight from 5"
+     */
+    public static String describe(int strength) {
+        RANK rank = rank(strength);
+        StringBuilder sb = new StringBuilder().append(rank);
+        if (rank == RANK.STRAIGHT || rank == RANK.STRAIGHTFLUSH) {
+            return sb.append(" from ").append(faceValues[kicker(strength, 0)]).toString();
+        }
+        for (int i = 0; i < rank.kickers; i++) {
+            sb.append(" ").append(faceValues[kicker(strength, i)]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param faces 13-bit face mask of the cards in the flush suit, at least 5
+     * @return strength of the (straight) flush
+     */
+    static int evaluateFlush(int faces) {
+        return flush[faces];
+    }
+
+    /**
+     * @param counts number of cards per face, 4 bits per face
+     * @param cards total number of cards
+     * @return strength of a hand that has no flush with the given face counts
+     */
+    static int evaluateFaces(long counts, int cards) {
+        return nonflush[base[cards] + hash(counts, cards)];
+    }
+
+    /**
+     * @return dense index of the face counts among all face counts with the
+     * same number of cards. The faces are ranked from the highest face down,
+     * faces with no cards do not change the index.
+     */
+    private static int hash(long counts, int sum) {
+        int hash = 0;
+        while (counts != 0) {
+            int face = (63 - Long.numberOfLeadingZeros(counts)) >>> 2;
+            int digit = (int) (counts >>> (4 * face)) & 0xF;
+            hash += offset[(face * (MAX_CARDS + 1) + sum) * DIGITS + digit];
+            sum -= digit;
+            counts &= ~(0xFL << (4 * face));
+        }
+        return hash;
+    }
+
+    /**
+     * Recursively enumerates all face counts and stores their strength.
+     */
+    private static void fillNonFlush(int face, long counts, int cards) {
+        if (face < 0) {
+            nonflush[base[cards] + hash(counts, cards)] = strength(counts);
+            return;
+        }
+        for (int digit = 0; digit < DIGITS && cards + digit <= MAX_CARDS; digit++) {
+            fillNonFlush(face - 1, counts | ((long) digit << (4 * face)), cards + digit);
+        }
+    }
+
+    /**
+     * @return strength of a hand without a flush, computed from the number of
+     * cards per face. Only used to fill the tables.
+     */
+    private static int strength(long counts) {
+        int faces = 0;
+        int pairs = 0;
+        int trips = 0;
+        int quads = 0;
+        for (int face = 0; face < Card.FACES; face++) {
+            int count = (int) (counts >>> (4 * face)) & 0xF;
+            if (count > 0) {
+                faces |= 1 << face;
+            }
+            if (count == 2) {
+                pairs |= 1 << face;
+            } else if (count == 3) {
+                trips |= 1 << face;
+            } else if (count == 4) {
+                quads |= 1 << face;
+            }
+        }
+        if (quads != 0) {
+            int quad = top(quads, 1);
+            return strength(FOUROFAKIND, (quad << 4) | top(faces & ~quads, 1), 2);
+        }
+        if (trips != 0) {
+            int trip = top(trips, 1);
+            int rest = (pairs | trips) & ~(1 << trip);
+            if (rest != 0) {
+                return strength(FULLHOUSE, (trip << 4) | top(rest, 1), 2);
+            }
+        }
+        int straight = straight(faces);
+        if (straight >= 0) {
+            return strength(STRAIGHT, straight, 1);
+        }
+        if (trips != 0) {
+            int trip = top(trips, 1);
+            return strength(THREEOFAKIND, (trip << 8) | top(faces & ~trips, 2), 3);
+        }
+        if (Integer.bitCount(pairs) >= 2) {
+            int twopair = top(pairs, 2);
+            int kickers = faces & ~(1 << (twopair & 0xF)) & ~(1 << (twopair >>> 4));
+            return strength(TWOPAIR, (twopair << 4) | top(kickers, 1), 3);
+        }
+        if (pairs != 0) {
+            int pair = top(pairs, 1);
+            return strength(ONEPAIR, (pair << 12) | top(faces & ~pairs, 3), 4);
+        }
+        return strength(HIGHCARD, top(faces, 5), 5);
+    }
+
+    /**
+     * @return the category in the highest bits, and the n faces (packed in
+     * nibbles) that decide between hands of the same category below it, most
+     * significant first.
+     */
+    private static int strength(int category, int faces, int n) {
+        return (category << RANK_SHIFT) | (faces << (4 * (5 - n)));
+    }
+
+    /**
+     * @return the n highest faces in the 13-bit face mask packed in nibbles,
+     * highest face first. When the mask has less than n faces the remaining
+     * nibbles are 0.
+     */
+    private static int top(int faces, int n) {
+        int top = 0;
+        for (int i = 0; i < n; i++) {
+            int face = 31 - Integer.numberOfLeadingZeros(faces);
+            top = (top << 4) | (faces == 0 ? 0 : face);
+            faces &= ~(1 << face);
+        }
+        return top;
+    }
+
+    /**
+     * @return ordinal of the highest face of the best straight in a 13-bit
+     * face mask, or -1 if there is no straight. The faces are shifted up one
+     * bit and the Ace is copied into bit 0, so that a straight is a run of 5
+     * set bits and the Ace can also count as the lowest card.
+     */
+    static int straight(int faces) {
+        int f = (faces << 1) | (faces >>> (Card.FACES - 1));
+        int run = f & (f >>> 1) & (f >>> 2) & (f >>> 3) & (f >>> 4);
+        return run == 0 ? -1 : 31 - Integer.numberOfLeadingZeros(run) + 3;
+    }
+}
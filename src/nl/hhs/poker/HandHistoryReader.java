@@ -0,0 +1,246 @@
+package nl.hhs.poker;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * Streams the games written by a {@link HandHistoryRecorder}, one segment
+ * file at a time, mapped into memory. The reader is a cursor: {@link #nextGame()}
+ * moves to the next game, after which its seats can be read and its entries
+ * can be walked with {@link #nextEntry()}. No objects are created per game.
+ * <pre>
+ * while (reader.nextGame()) {
+ *     while (reader.nextEntry()) {
+ *         if (reader.getType() == EVENTTYPE.WIN) ...
+ *     }
+ * }
+ * </pre>
+ */
+public final class HandHistoryReader implements Closeable {
+
+    /**
+     * kind of an entry for a community card, the value is the card index
+     */
+    public static final int CARD = 64;
+    /**
+     * kind of an entry for a player that showed the cards, the value is the
+     * strength of the best hand
+     */
+    public static final int SHOWDOWN = 65;
+    /**
+     * flag in the kind of an Event entry, when the player did not decide in
+     * time, see {@link Match#setDecisionTimeout(long)}
+     */
+    public static final int TIMEOUT = 128;
+    private static final EVENTTYPE eventtypes[] = EVENTTYPE.values();
+    private final File segments[];
+    private int nextSegment = 0;
+    private MappedByteBuffer segment;
+    private long seed;
+    private int seats;
+    private int blind;
+    private int chips[] = new int[0];
+    private long holecards[] = new long[0];
+    private int end; // position after the current game
+    private int kind = -1;
+    private boolean timeout;
+    private int seat;
+    private int value;
+
+    /**
+     * @param directory directory of the segment files
+     * @param prefix start of the name of the segment files
+     */
+    public HandHistoryReader(File directory, String prefix) {
+        segments = segments(directory, prefix);
+    }
+
+    /**
+     * @return the segment files with the given prefix, in order
+     */
+    static File[] segments(File directory, String prefix) {
+        final Pattern name = Pattern.compile(Pattern.quote(prefix) + "-\\d{6}\\.hh");
+        File files[] = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String file) {
+                return name.matcher(file).matches();
+            }
+        });
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    static int segmentNumber(File segment) {
+        String name = segment.getName();
+        return Integer.parseInt(name.substring(name.length() - 9, name.length() - 3));
+    }
+
+    /**
+     * Moves to the next game, skipping the entries of the current game that
+     * were not read.
+     *
+     * @return false when there are no more games
+     */
+    public boolean nextGame() throws IOException {
+        if (segment != null) {
+            segment.position(end);
+        }
+        while (segment == null || segment.remaining() < 4 || segment.getInt(segment.position()) == 0) {
+            if (nextSegment == segments.length) {
+                segment = null;
+                return false;
+            }
+            segment = map(segments[nextSegment++]);
+        }
+        int start = segment.position();
+        end = start + segment.getInt();
+        seed = segment.getLong();
+        seats = segment.get();
+        blind = segment.getInt();
+        if (chips.length < seats) {
+            chips = new int[seats];
+            holecards = new long[seats];
+        }
+        for (int i = 0; i < seats; i++) {
+            chips[i] = segment.getInt();
+            holecards[i] = Card.mask(segment.get()) | Card.mask(segment.get());
+        }
+        kind = -1;
+        return true;
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            MappedByteBuffer map = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (map.remaining() < HandHistoryRecorder.HEADER || map.getInt() != HandHistoryRecorder.MAGIC) {
+                throw new IOException(file + " is not a hand history");
+            }
+            int version = map.getInt();
+            if (version != HandHistoryRecorder.VERSION) {
+                throw new IOException(file + " has unknown version " + version);
+            }
+            return map;
+        }
+    }
+
+    /**
+     * Skips the given number of games, without reading their entries.
+     *
+     * @return false when there were not enough games
+     */
+    public boolean skip(long games) throws IOException {
+        for (long i = 0; i < games; i++) {
+            if (!nextGame()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return seed of the current game, see {@link Game#getSeed()}
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return number of seats in the current game
+     */
+    public int getSeats() {
+        return seats;
+    }
+
+    /**
+     * @return the small blind amount of the current game
+     */
+    public int getBlind() {
+        return blind;
+    }
+
+    /**
+     * @return chips of the player on the seat at the start of the game
+     */
+    public int getStartChips(int seat) {
+        return chips[seat];
+    }
+
+    /**
+     * @return card mask of the hole cards of the player on the seat, see
+     * {@link Card}
+     */
+    public long getHoleCards(int seat) {
+        return holecards[seat];
+    }
+
+    /**
+     * Moves to the next entry of the current game, in the order it happened.
+     *
+     * @return false when there are no more entries in this game
+     */
+    public boolean nextEntry() {
+        if (segment == null || segment.position() >= end) {
+            return false;
+        }
+        kind = segment.get() & 0xFF;
+        timeout = (kind & TIMEOUT) != 0;
+        kind &= ~TIMEOUT;
+        seat = segment.get();
+        value = segment.getInt();
+        return true;
+    }
+
+    /**
+     * @return the {@link EVENTTYPE} ordinal, {@link #CARD} or
+     * {@link #SHOWDOWN}
+     */
+    public int getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the type of the current entry, or null if it is not an Event
+     */
+    public EVENTTYPE getType() {
+        return kind >= 0 && kind < eventtypes.length ? eventtypes[kind] : null;
+    }
+
+    /**
+     * @return true if the current entry is an Event of a player that passed
+     * or folded because the decision took too long
+     */
+    public boolean isTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @return seat of the player of the current entry
+     */
+    public int getSeat() {
+        return seat;
+    }
+
+    /**
+     * @return the total bid level of an Event, the card index of a
+     * {@link #CARD} or the strength of a {@link #SHOWDOWN}
+     */
+    public int getValue() {
+        return value;
+    }
+
+    @Override
+    public void close() {
+        segment = null;
+        nextSegment = segments.length;
+    }
+}
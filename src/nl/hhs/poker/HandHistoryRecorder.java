@@ -0,0 +1,206 @@
+package nl.hhs.poker;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Records every game it listens to as a compact binary record, see
+ * {@link Match#addListener(GameListener)}. A game is collected in a buffer of
+ * the thread that plays it, and when it ends the record is copied into a
+ * memory-mapped segment file in one go, so games of parallel matches can
+ * share a recorder. When a segment is full the next one is started, the
+ * segments are named prefix-000000.hh, prefix-000001.hh, etc. and a new
+ * recorder continues after the last existing segment.
+ * <p/>
+ * A segment starts with the int {@link #MAGIC} and the int {@link #VERSION},
+ * followed by the records and zeroes after the last record. A record is:
+ * <pre>
+ * int  length of the record in bytes, including this int
+ * long seed of the game, see {@link Game#getSeed()}
+ * byte number of seats
+ * int  small blind amount
+ * per seat: int chips at the start, byte card, byte card
+ * entries of 6 bytes: byte kind, byte seat, int value
+ * </pre>
+ * The kind of an entry is the {@link EVENTTYPE} ordinal with the total bid
+ * level as value, plus {@link HandHistoryReader#TIMEOUT} when the player did
+ * not decide in time, {@link HandHistoryReader#CARD} for a community card with
+ * the card index as value, or {@link HandHistoryReader#SHOWDOWN} for a player
+ * that showed the cards with the strength as value, see {@link HandEvaluator}.
+ * Read the records with a {@link HandHistoryReader}.
+ */
+public final class HandHistoryRecorder implements GameListener, Closeable {
+
+    public static final int MAGIC = 0x504B4848; // "PKHH"
+    public static final int VERSION = 1;
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    static final int HEADER = 8;
+    static final int ENTRY = 6;
+    private final File directory;
+    private final String prefix;
+    private final int segmentSize;
+    private final ThreadLocal<ByteBuffer> buffers = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(4096);
+        }
+    };
+    private MappedByteBuffer segment;
+    private int segmentNumber;
+    private long games;
+
+    public HandHistoryRecorder(File directory, String prefix) throws IOException {
+        this(directory, prefix, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param directory directory for the segment files, which is created if
+     * needed
+     * @param prefix start of the name of the segment files
+     * @param segmentSize size in bytes of a segment file
+     */
+    public HandHistoryRecorder(File directory, String prefix, int segmentSize) throws IOException {
+        if (segmentSize < 1024) {
+            throw new IllegalArgumentException("Segment size must be at least 1024 bytes");
+        }
+        this.directory = directory;
+        this.prefix = prefix;
+        this.segmentSize = segmentSize;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File existing[] = HandHistoryReader.segments(directory, prefix);
+        segmentNumber = existing.length == 0 ? 0 : HandHistoryReader.segmentNumber(existing[existing.length - 1]) + 1;
+        segment = map(segmentNumber);
+    }
+
+    static File segmentFile(File directory, String prefix, int number) {
+        return new File(directory, String.format("%s-%06d.hh", prefix, number));
+    }
+
+    private MappedByteBuffer map(int number) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(directory, prefix, number), "rw")) {
+            // the mapping stays valid when the file is closed
+            MappedByteBuffer map = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            map.putInt(MAGIC).putInt(VERSION);
+            return map;
+        }
+    }
+
+    @Override
+    public void gameStarted(Game game) {
+        int seats = game.getPlayers().size();
+        buffers.get().clear();
+        ByteBuffer buffer = buffer(4 + 8 + 1 + 4 + 6 * seats);
+        buffer.putInt(0); // length, filled in at the end
+        buffer.putLong(game.getSeed());
+        buffer.put((byte) seats);
+        buffer.putInt(game.getBlindAmount());
+        for (int seat = 0; seat < seats; seat++) {
+            long cards = game.getHoleCards(seat);
+            buffer.putInt(game.getStartChips(seat));
+            buffer.put((byte) Long.numberOfTrailingZeros(cards));
+            buffer.put((byte) (63 - Long.numberOfLeadingZeros(cards)));
+        }
+    }
+
+    @Override
+    public void eventAdded(Game game, int seat, EVENTTYPE type, int total, boolean timeout) {
+        entry(timeout ? type.ordinal() | HandHistoryReader.TIMEOUT : type.ordinal(), seat, total);
+    }
+
+    @Override
+    public void cardDealt(Game game, int card) {
+        entry(HandHistoryReader.CARD, 0, card);
+    }
+
+    @Override
+    public void gameEnded(Game game) {
+        if (game.isShowDown()) {
+            long board = game.getCommunityMask();
+            int seat = 0;
+            for (Player player : game.getPlayers()) {
+                if (game.isShowDown(player)) {
+                    entry(HandHistoryReader.SHOWDOWN, seat, HandEvaluator.evaluate(board | game.getHoleCards(seat)));
+                }
+                seat++;
+            }
+        }
+        ByteBuffer buffer = buffers.get();
+        buffer.putInt(0, buffer.position());
+        buffer.flip();
+        write(buffer);
+    }
+
+    private void entry(int kind, int seat, int value) {
+        ByteBuffer buffer = buffer(ENTRY);
+        buffer.put((byte) kind);
+        buffer.put((byte) seat);
+        buffer.putInt(value);
+    }
+
+    /**
+     * @return the buffer of this thread, with room for at least the given
+     * number of bytes
+     */
+    private ByteBuffer buffer(int bytes) {
+        ByteBuffer buffer = buffers.get();
+        if (buffer.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(2 * (buffer.capacity() + bytes));
+            buffer.flip();
+            larger.put(buffer);
+            buffers.set(larger);
+            buffer = larger;
+        }
+        return buffer;
+    }
+
+    private void write(ByteBuffer record) {
+        MappedByteBuffer full = null;
+        synchronized (this) {
+            if (segment == null) {
+                throw new IllegalStateException("Recorder is closed");
+            }
+            if (record.remaining() > segmentSize - HEADER) {
+                throw new IllegalArgumentException("Record of " + record.remaining() + " bytes does not fit in a segment");
+            }
+            if (record.remaining() > segment.remaining()) {
+                full = segment;
+                try {
+                    segment = map(++segmentNumber);
+                } catch (IOException ex) {
+                    throw new IllegalStateException("Cannot start segment " + segmentNumber, ex);
+                }
+            }
+            segment.put(record);
+            games++;
+        }
+        if (full != null) {
+            // outside the lock, so other threads keep recording meanwhile
+            full.force();
+        }
+    }
+
+    /**
+     * @return number of games recorded
+     */
+    public synchronized long getGames() {
+        return games;
+    }
+
+    /**
+     * Writes the recorded games to disk, no more games can be recorded.
+     */
+    @Override
+    public synchronized void close() {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package nl.hhs.poker;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The hole cards a player may hold, every one of the 1326 combinations of
+ * two cards with its own weight: 1 for hole cards that are always played
+ * this way, 0.5 for hole cards that are played this way half of the time and
+ * 0 for hole cards outside the range. A range is usually written in the
+ * common notation and read by {@link #parse(String)}, or taken from the
+ * strongest starting hands by {@link #top(double)}. The equity of a range
+ * against another range is computed by {@link RangeEquityCalculator}.
+ */
+public final class HandRange {
+
+    public static final int COMBOS = Card.CARDS * (Card.CARDS - 1) / 2;
+    static final int first[] = new int[COMBOS];
+    static final int second[] = new int[COMBOS];
+    static final long masks[] = new long[COMBOS];
+    private static final String faces = "23456789TJQKA";
+    private static final String suits = "hdcs"; // in the order of SUIT
+    private final double weights[] = new double[COMBOS];
+
+    static {
+        for (int c1 = 0, combo = 0; c1 < Card.CARDS; c1++) {
+            for (int c2 = c1 + 1; c2 < Card.CARDS; c2++, combo++) {
+                first[combo] = c1;
+                second[combo] = c2;
+                masks[combo] = Card.mask(c1) | Card.mask(c2);
+            }
+        }
+    }
+
+    /**
+     * Creates an empty range
+     */
+    public HandRange() {
+    }
+
+    /**
+     * @return number 0-1325 of the combination of the two card indices
+     */
+    static int combo(int card1, int card2) {
+        int low = Math.min(card1, card2);
+        int high = Math.max(card1, card2);
+        if (low == high) {
+            throw new IllegalArgumentException("Hole cards must be two different cards");
+        }
+        // the combinations of lower first cards come before
+        return low * (2 * Card.CARDS - low - 1) / 2 + high - low - 1;
+    }
+
+    /**
+     * @return a range that holds only the given hole cards
+     */
+    public static HandRange of(Hand hand) {
+        return new HandRange().set(hand.getCardIndex(0), hand.getCardIndex(1), 1);
+    }
+
+    /**
+     * Reads a range written as a comma separated list of:
+     * <ul>
+     * <li>hand classes: <code>QQ</code>, <code>AKs</code>, <code>AKo</code>,
+     * or <code>AK</code> for both</li>
+     * <li>a class and all better kickers: <code>QQ+</code> is QQ, KK and AA,
+     * <code>A9s+</code> is A9s to AKs</li>
+     * <li>a span of classes: <code>22-66</code> or <code>K9o-KJo</code></li>
+     * <li>single hole cards: <code>AhKh</code>, suits are h, d, c and s</li>
+     * <li><code>any</code> for all hole cards</li>
+     * </ul>
+     * Every item may end with a weight, e.g. <code>AQo:0.5</code>, the
+     * default is 1. A later item replaces the weight of hole cards in an
+     * earlier item.
+     *
+     * @throws IllegalArgumentException if the range cannot be read
+     */
+    public static HandRange parse(String range) {
+        HandRange result = new HandRange();
+        for (String item : range.split(",")) {
+            item = item.trim();
+            if (item.isEmpty()) {
+                continue;
+            }
+            double weight = 1;
+            int colon = item.indexOf(':');
+            try {
+                if (colon >= 0) {
+                    weight = Double.parseDouble(item.substring(colon + 1).trim());
+                    item = item.substring(0, colon).trim();
+                }
+                result.parseItem(item, weight);
+            } catch (RuntimeException ex) {
+                throw new IllegalArgumentException("Cannot read \"" + item + "\" in range " + range, ex);
+            }
+        }
+        return result;
+    }
+
+    private void parseItem(String item, double weight) {
+        if (item.equalsIgnoreCase("any")) {
+            Arrays.fill(weights, weight);
+        } else if (item.length() == 4 && suits.indexOf(item.charAt(1)) >= 0 && suits.indexOf(item.charAt(3)) >= 0) {
+            set(card(item, 0), card(item, 2), weight);
+        } else if (item.endsWith("+")) {
+            String base = item.substring(0, item.length() - 1);
+            int high = face(base, 0);
+            int low = face(base, 1);
+            // a pair raises both faces, other hands raise the kicker
+            for (int kicker = low; kicker <= (high == low ? Card.FACES - 1 : high - 1); kicker++) {
+                setClasses(high == low ? kicker : high, kicker, base.substring(2), weight);
+            }
+        } else if (item.indexOf('-') > 0) {
+            String from = item.substring(0, item.indexOf('-'));
+            String to = item.substring(item.indexOf('-') + 1);
+            int high = face(from, 0);
+            int low = face(from, 1);
+            boolean pairs = high == low;
+            if (pairs != (face(to, 0) == face(to, 1)) || !pairs && face(to, 0) != high
+                    || !from.substring(2).equals(to.substring(2))) {
+                throw new IllegalArgumentException("A span must keep the high card or be a span of pairs");
+            }
+            int last = face(to, 1);
+            for (int kicker = Math.min(low, last); kicker <= Math.max(low, last); kicker++) {
+                setClasses(pairs ? kicker : high, kicker, from.substring(2), weight);
+            }
+        } else {
+            setClasses(face(item, 0), face(item, 1), item.substring(2), weight);
+        }
+    }
+
+    private static int face(String item, int i) {
+        int face = faces.indexOf(Character.toUpperCase(item.charAt(i)));
+        if (face < 0) {
+            throw new IllegalArgumentException("Unknown face " + item.charAt(i));
+        }
+        return face;
+    }
+
+    private static int card(String item, int i) {
+        return suits.indexOf(item.charAt(i + 1)) * Card.FACES + face(item, i);
+    }
+
+    /**
+     * Sets the suited, offsuit or both classes of the two faces
+     */
+    private void setClasses(int face1, int face2, String suffix, double weight) {
+        int high = Math.max(face1, face2);
+        int low = Math.min(face1, face2);
+        boolean suited = suffix.equalsIgnoreCase("s");
+        boolean offsuit = suffix.equalsIgnoreCase("o");
+        if (!suited && !offsuit && !suffix.isEmpty() || high == low && suited) {
+            throw new IllegalArgumentException("Unknown hand " + faces.charAt(high) + faces.charAt(low) + suffix);
+        }
+        if (!offsuit && high != low) {
+            setClass(high * Card.FACES + low, weight);
+        }
+        if (!suited) {
+            setClass(low * Card.FACES + high, weight);
+        }
+    }
+
+    /**
+     * @param percent percentage of all 1326 hole cards
+     * @return the strongest starting hands by their equity against one
+     * random opponent, see {@link PreflopEquity}, whole classes up to the
+     * first class that reaches the percentage
+     */
+    public static HandRange top(double percent) {
+        Integer order[] = new Integer[PreflopEquity.CLASSES];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(PreflopEquity.getEquity(b, 1), PreflopEquity.getEquity(a, 1));
+            }
+        });
+        HandRange range = new HandRange();
+        for (int i = 0; i < order.length && range.getCombos() < percent * COMBOS / 100; i++) {
+            range.setClass(order[i], 1);
+        }
+        return range;
+    }
+
+    /**
+     * Sets the weight of the given hole cards
+     *
+     * @return this range
+     */
+    public HandRange set(int card1, int card2, double weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("A weight cannot be negative");
+        }
+        weights[combo(card1, card2)] = weight;
+        return this;
+    }
+
+    /**
+     * Sets the weight of all hole cards of the class, see
+     * {@link PreflopEquity#classOf(int, int)}
+     *
+     * @return this range
+     */
+    public HandRange setClass(int handClass, double weight) {
+        for (int combo = 0; combo < COMBOS; combo++) {
+            if (PreflopEquity.classOf(first[combo], second[combo]) == handClass) {
+                set(first[combo], second[combo], weight);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return weight of the given hole cards
+     */
+    public double getWeight(int card1, int card2) {
+        return weights[combo(card1, card2)];
+    }
+
+    double getWeight(int combo) {
+        return weights[combo];
+    }
+
+    /**
+     * @return number of hole cards with a weight above 0
+     */
+    public int getCombos() {
+        int combos = 0;
+        for (double weight : weights) {
+            if (weight > 0) {
+                combos++;
+            }
+        }
+        return combos;
+    }
+}
@@ -0,0 +1,212 @@
+package nl.hhs.poker;
+
+/**
+ * What the hole cards of a player make with the community cards dealt so
+ * far: the made hand and its kickers, the flush and straight draws and the
+ * outs. A bot gets the state of its own hand in every call to raise:
+ * <pre>
+ * HandState state = getHandState();
+ * if (state.getRank().compareTo(RANK.TWOPAIR) &gt;= 0 || state.getOuts() &gt;= 8) ...
+ * </pre>
+ * The state is brought up to date when it is asked for, by adding the
+ * community cards dealt since, each in constant time: the cards are kept in a
+ * {@link PartialHand}, so the strength is a table lookup, and the draws
+ * follow from the face masks of the cards without looking at any subset of
+ * them. The outs are counted once per street, when first asked for.
+ * <p/>
+ * Draws and outs are only given after the flop and the turn, and only count
+ * when the hole cards take part, a straight or flush on the community cards
+ * alone is shared by all players.
+ */
+public final class HandState {
+
+    private static final FACE faceValues[] = FACE.values();
+    private static final SUIT suitValues[] = SUIT.values();
+    private static final int FLOP = 3;
+    private static final int STRAIGHT = RANK.STRAIGHT.ordinal();
+    private final long holecards;
+    private final PartialHand hand; // hole cards and community cards
+    private final PartialHand board; // community cards only
+    private int strength;
+    private int flushDraw; // 1 + suit ordinal, 0 for none
+    private int straightDraw; // 13-bit mask of the faces that complete a straight
+    private long outs = -1; // card mask, -1 until counted for this street
+
+    /**
+     * @param holecards card mask of the two hole cards
+     */
+    HandState(long holecards) {
+        this.holecards = holecards;
+        hand = new PartialHand(holecards);
+        board = new PartialHand();
+        strength = hand.evaluate();
+    }
+
+    /**
+     * Adds the next community card
+     */
+    void add(int card) {
+        hand.add(card);
+        board.add(card);
+        strength = hand.evaluate();
+        outs = -1;
+        flushDraw = 0;
+        straightDraw = 0;
+        if (board.size() < FLOP || board.size() >= Game.COMMUNITY_CARDS) {
+            return;
+        }
+        long mask = hand.getMask();
+        int rank = strength >>> HandEvaluator.RANK_SHIFT;
+        if (rank < RANK.FLUSH.ordinal()) {
+            for (int suit = 0; suit < Card.SUITS; suit++) {
+                if (Integer.bitCount(Card.faces(mask, suit)) == 4 && Card.faces(holecards, suit) != 0) {
+                    flushDraw = suit + 1;
+                }
+            }
+        }
+        if (rank < STRAIGHT) {
+            int faces = Card.faces(mask);
+            int boardFaces = Card.faces(board.getMask());
+            for (int missing = ~faces & Card.FACEMASK; missing != 0; missing &= missing - 1) {
+                int face = 1 << Integer.numberOfTrailingZeros(missing);
+                int straight = HandEvaluator.straight(faces | face);
+                if (straight > HandEvaluator.straight(boardFaces | face)) {
+                    straightDraw |= face;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of community cards in this state
+     */
+    public int getCommunityCount() {
+        return board.size();
+    }
+
+    /**
+     * @return card mask of the hole cards and community cards, see {@link Card}
+     */
+    public long getMask() {
+        return hand.getMask();
+    }
+
+    /**
+     * @return strength of the best hand of 5 cards made so far, see
+     * {@link HandEvaluator}
+     */
+    public int getStrength() {
+        return strength;
+    }
+
+    /**
+     * @return category of the best hand made so far
+     */
+    public RANK getRank() {
+        return HandEvaluator.rank(strength);
+    }
+
+    /**
+     * @return number of faces that decide between hands of the same rank,
+     * see {@link #getKicker(int)}
+     */
+    public int getKickerCount() {
+        return getRank().kickers;
+    }
+
+    /**
+     * @return the i-th face that decides between hands of the same rank,
+     * e.g. for one pair face 0 is the pair and 1-3 are the kickers, and for a
+     * straight face 0 is the highest card
+     */
+    public FACE getKicker(int i) {
+        if (i < 0 || i >= getKickerCount()) {
+            throw new IndexOutOfBoundsException("A " + getRank() + " has " + getKickerCount() + " faces");
+        }
+        return faceValues[HandEvaluator.kicker(strength, i)];
+    }
+
+    /**
+     * @return the suit of which the hand holds 4 cards, at least one of them
+     * a hole card, or null if there is no flush draw
+     */
+    public SUIT getFlushDraw() {
+        return flushDraw == 0 ? null : suitValues[flushDraw - 1];
+    }
+
+    /**
+     * @return the hand has no straight, and two faces complete one, e.g.
+     * 9-8 on 7-6-2, or a double gutshot
+     */
+    public boolean isOpenEnded() {
+        return Integer.bitCount(straightDraw) >= 2;
+    }
+
+    /**
+     * @return the hand has no straight, and one face completes one, e.g.
+     * 9-8 on 6-5-2
+     */
+    public boolean isGutshot() {
+        return Integer.bitCount(straightDraw) == 1;
+    }
+
+    /**
+     * @return number of cards that make a better category of hand when dealt
+     * as the next community card, see {@link #getOutsMask()}
+     */
+    public int getOuts() {
+        return Long.bitCount(getOutsMask());
+    }
+
+    /**
+     * The cards that make a better category of hand (e.g. two pair instead
+     * of one pair) when dealt as the next community card, where the hole
+     * cards make the difference: the hand is of a better category than the
+     * community cards make with the card alone, or a higher straight, flush or
+     * better. So a card that pairs the community cards is no out for a high
+     * card hand. The cards of other players are not known, so they are
+     * counted too.
+     *
+     * @return card mask of the outs, 0 before the flop and after the river
+     */
+    public long getOutsMask() {
+        if (outs < 0) {
+            outs = 0;
+            if (board.size() >= FLOP && board.size() < Game.COMMUNITY_CARDS) {
+                int better = ((strength >>> HandEvaluator.RANK_SHIFT) + 1) << HandEvaluator.RANK_SHIFT;
+                for (long unseen = ~hand.getMask() & ((1L << Card.CARDS) - 1); unseen != 0; unseen &= unseen - 1) {
+                    int card = Long.numberOfTrailingZeros(unseen);
+                    int s = hand.evaluate(card);
+                    if (s >= better) {
+                        int b = board.evaluate(card);
+                        int rank = s >>> HandEvaluator.RANK_SHIFT;
+                        if (rank > b >>> HandEvaluator.RANK_SHIFT || rank >= STRAIGHT && s > b) {
+                            outs |= Card.mask(card);
+                        }
+                    }
+                }
+            }
+        }
+        return outs;
+    }
+
+    /**
+     * @return e.g. "One Pair K Q 9 5, flush draw, 12 outs"
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(HandEvaluator.describe(strength));
+        if (flushDraw != 0) {
+            sb.append(", flush draw");
+        }
+        if (isOpenEnded()) {
+            sb.append(", open-ended straight draw");
+        } else if (isGutshot()) {
+            sb.append(", gutshot");
+        }
+        if (board.size() >= FLOP && board.size() < Game.COMMUNITY_CARDS) {
+            sb.append(", ").append(getOuts()).append(" outs");
+        }
+        return sb.toString();
+    }
+}
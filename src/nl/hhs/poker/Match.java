@@ -2,23 +2,92 @@
 package nl.hhs.poker;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 
 public class Match {
     // An ArrayDeque is used to easily rotate the button (Player to bet first) between games
-    private ArrayList<Player> playersLeftInGame;
+    private final ArrayList<Player> playersLeftInGame;
+    private final List<Player> playersView; // read-only view on playersLeftInGame
+    private final Deck deck; // reused for every game
+    private final Random random; // draws the seed of every game
+    private final ArrayList<GameListener> listeners = new ArrayList();
+    private long decisionTimeout = 0;
     
     public Match(ArrayList<Player> players) {
+        this(players, new Random());
+    }
+
+    /**
+     * @param seed the cards of all games only depend on the seed, so with the
+     * same players and decisions the match is played the same
+     */
+    public Match(ArrayList<Player> players, long seed) {
+        this(players, new Random(seed));
+    }
+
+    /**
+     * @param random generator that draws the seed of every game, used in this
+     * match only, so matches can be played in parallel without sharing state
+     */
+    public Match(ArrayList<Player> players, Random random) {
         playersLeftInGame = new ArrayList(players);
+        playersView = Collections.unmodifiableList(playersLeftInGame);
+        this.random = random;
+        deck = new Deck(new Random());
     }
-    
-    public ArrayList<Player> getPlayersLeftInMatch() {
-        return (ArrayList)playersLeftInGame.clone();
+
+    /**
+     * @return read-only view on the players that are still in the match, in
+     * the order of the next game. The view follows the match, copy it to keep
+     * the line-up of one game.
+     */
+    public List<Player> getPlayersLeftInMatch() {
+        return playersView;
     }
     
+    /**
+     * @param listener is told about every event of the following games,
+     * after the listeners added before it
+     */
+    public void addListener(GameListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("There is no listener to add");
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener is no longer told about the following games
+     */
+    public void removeListener(GameListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @param millis time a player gets to decide on a bid in the following
+     * games, a player that takes longer passes or folds, and the Event is
+     * marked as a timeout; 0 lets players take as long as they want
+     */
+    public void setDecisionTimeout(long millis) {
+        decisionTimeout = millis;
+    }
+
     public Game playGame() {
-        Game game = new Game(playersLeftInGame);
+        Game game = new Game(playersLeftInGame, deck, random.nextLong(),
+                listeners.toArray(new GameListener[0]));
+        game.setDecisionTimeout(decisionTimeout);
+        play(game);
+        return game;
+    }
 
+    /**
+     * Plays the rounds of bidding of a new game, dealing the community cards
+     * in between, and settles the game.
+     */
+    static void play(Game game) {
         // first round of bidding without community cards
         game.bidUntilNoRaise();
 
@@ -35,9 +104,24 @@ public class Match {
         game.bidUntilNoRaise();
         
         game.getShowDown();
-        return game;
     }
     
+    /**
+     * Seats a player that moves to this table, as last to act in the next
+     * game. Only used between games.
+     */
+    void seat(Player player) {
+        playersLeftInGame.add(player);
+    }
+
+    /**
+     * Takes a player away from this table, e.g. to move to another table.
+     * Only used between games.
+     */
+    void unseat(Player player) {
+        playersLeftInGame.remove(player);
+    }
+
     /**
      * Remove players that have no money left, and move the dealer to the next
      * player in line.
@@ -0,0 +1,282 @@
+package nl.hhs.poker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Counts how every player plays while the games are played, so a bot can
+ * model its opponents without reading the event history of every game:
+ * <pre>
+ * OpponentStats stats = new OpponentStats();
+ * match.addListener(stats);
+ * ...
+ * if (stats.getFoldToRaise(opponent) &gt; 60) ... // bluff
+ * </pre>
+ * The counts are kept per player in primitive arrays and live as long as
+ * this listener, across all games of the Match. A player gets its place in
+ * the arrays when it is first seen, and the places of the seats are looked
+ * up once per game, so an Event costs a few array updates. Every statistic
+ * is read in constant time.
+ * <p/>
+ * The statistics are:
+ * <ul>
+ * <li>VPIP: percentage of games in which the player put in chips before the
+ * flop other than the blinds</li>
+ * <li>preflop raise: percentage of games in which the player raised before
+ * the flop</li>
+ * <li>aggression: raises divided by calls, over all rounds</li>
+ * <li>fold to raise: percentage of decisions facing a raise that were a
+ * fold</li>
+ * <li>showdown: percentage of games in which the player showed the cards</li>
+ * <li>win rate: percentage of games in which the player won or tied for a
+ * pot, and the average chips won per game</li>
+ * </ul>
+ * A listener is used by one Match at a time, it is not thread safe.
+ */
+public final class OpponentStats implements GameListener {
+
+    private final IdentityHashMap<Player, Integer> index = new IdentityHashMap();
+    private final ArrayList<Player> players = new ArrayList();
+    // counts per player
+    private int games[] = new int[8];
+    private int vpip[] = new int[8];
+    private int preflopRaises[] = new int[8];
+    private int raises[] = new int[8];
+    private int calls[] = new int[8];
+    private int facingRaise[] = new int[8];
+    private int foldsToRaise[] = new int[8];
+    private int showdowns[] = new int[8];
+    private int wins[] = new int[8];
+    private long chipsWon[] = new long[8];
+    // state of the current game per seat
+    private int slot[] = new int[0];
+    private int bid[] = new int[0];
+    private boolean folded[] = new boolean[0];
+    private boolean voluntary[] = new boolean[0];
+    private boolean preflopRaised[] = new boolean[0];
+    private int maxBid;
+    private boolean raised; // a player raised in the current game
+    private boolean preflop;
+
+    @Override
+    public void gameStarted(Game game) {
+        List<Player> seated = game.getPlayers();
+        int seats = seated.size();
+        if (slot.length < seats) {
+            slot = new int[seats];
+            bid = new int[seats];
+            folded = new boolean[seats];
+            voluntary = new boolean[seats];
+            preflopRaised = new boolean[seats];
+        }
+        for (int seat = 0; seat < seats; seat++) {
+            slot[seat] = slot(seated.get(seat));
+            games[slot[seat]]++;
+        }
+        Arrays.fill(bid, 0);
+        Arrays.fill(folded, false);
+        Arrays.fill(voluntary, false);
+        Arrays.fill(preflopRaised, false);
+        maxBid = 0;
+        raised = false;
+        preflop = true;
+    }
+
+    /**
+     * @return place of the player in the arrays, added when first seen
+     */
+    private int slot(Player player) {
+        Integer i = index.get(player);
+        if (i != null) {
+            return i;
+        }
+        int next = players.size();
+        if (next == games.length) {
+            int size = 2 * next;
+            games = Arrays.copyOf(games, size);
+            vpip = Arrays.copyOf(vpip, size);
+            preflopRaises = Arrays.copyOf(preflopRaises, size);
+            raises = Arrays.copyOf(raises, size);
+            calls = Arrays.copyOf(calls, size);
+            facingRaise = Arrays.copyOf(facingRaise, size);
+            foldsToRaise = Arrays.copyOf(foldsToRaise, size);
+            showdowns = Arrays.copyOf(showdowns, size);
+            wins = Arrays.copyOf(wins, size);
+            chipsWon = Arrays.copyOf(chipsWon, size);
+        }
+        index.put(player, next);
+        players.add(player);
+        return next;
+    }
+
+    @Override
+    public void eventAdded(Game game, int seat, EVENTTYPE type, int total, boolean timeout) {
+        int s = slot[seat];
+        boolean facing = raised && bid[seat] < maxBid;
+        switch (type) {
+            case SMALLBLIND:
+            case BIGBLIND:
+                break;
+            case FOLD:
+                folded[seat] = true;
+                if (facing) {
+                    facingRaise[s]++;
+                    foldsToRaise[s]++;
+                }
+                break;
+            case WIN:
+            case TIE:
+                wins[s]++;
+                break;
+            case LOST:
+                break;
+            default:
+                // an all-in above the maximum is a raise, otherwise a call
+                boolean raise = total > maxBid && type != EVENTTYPE.PASS && type != EVENTTYPE.CALL;
+                if (facing) {
+                    facingRaise[s]++;
+                }
+                if (raise) {
+                    raises[s]++;
+                    raised = true;
+                } else if (type != EVENTTYPE.PASS) {
+                    calls[s]++;
+                }
+                if (preflop && type != EVENTTYPE.PASS) {
+                    if (!voluntary[seat]) {
+                        voluntary[seat] = true;
+                        vpip[s]++;
+                    }
+                    if (raise && !preflopRaised[seat]) {
+                        preflopRaised[seat] = true;
+                        preflopRaises[s]++;
+                    }
+                }
+        }
+        bid[seat] = total;
+        maxBid = Math.max(maxBid, total);
+    }
+
+    @Override
+    public void cardDealt(Game game, int card) {
+        preflop = false;
+    }
+
+    @Override
+    public void gameEnded(Game game) {
+        List<Player> seated = game.getPlayers();
+        for (int seat = 0; seat < seated.size(); seat++) {
+            int s = slot[seat];
+            if (game.isShowDown() && !folded[seat]) {
+                showdowns[s]++;
+            }
+            chipsWon[s] += seated.get(seat).chipsOwned() - game.getStartChips(seat);
+        }
+    }
+
+    private static double percentage(int count, int of) {
+        return of == 0 ? 0 : 100.0 * count / of;
+    }
+
+    /**
+     * @return place of the player, or -1 if the player was not seen yet
+     */
+    private int find(Player player) {
+        Integer i = index.get(player);
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * @return the players seen so far, in the order they were first seen
+     */
+    public List<Player> getPlayers() {
+        return new ArrayList(players);
+    }
+
+    /**
+     * @return number of games the player was dealt in
+     */
+    public int getGames(Player player) {
+        int s = find(player);
+        return s < 0 ? 0 : games[s];
+    }
+
+    /**
+     * @return percentage of games in which the player voluntarily put in chips
+     * before the flop
+     */
+    public double getVpip(Player player) {
+        int s = find(player);
+        return s < 0 ? 0 : percentage(vpip[s], games[s]);
+    }
+
+    /**
+     * @return percentage of games in which the player raised before the flop
+     */
+    public double getPreflopRaise(Player player) {
+        int s = find(player);
+        return s < 0 ? 0 : percentage(preflopRaises[s], games[s]);
+    }
+
+    /**
+     * @return raises divided by calls, the number of raises if the player
+     * never called
+     */
+    public double getAggression(Player player) {
+        int s = find(player);
+        if (s < 0) {
+            return 0;
+        }
+        return calls[s] == 0 ? raises[s] : (double) raises[s] / calls[s];
+    }
+
+    /**
+     * @return percentage of the decisions facing a raise that were a fold
+     */
+    public double getFoldToRaise(Player player) {
+        int s = find(player);
+        return s < 0 ? 0 : percentage(foldsToRaise[s], facingRaise[s]);
+    }
+
+    /**
+     * @return percentage of games in which the player showed the cards
+     */
+    public double getShowdown(Player player) {
+        int s = find(player);
+        return s < 0 ? 0 : percentage(showdowns[s], games[s]);
+    }
+
+    /**
+     * @return percentage of games in which the player won or tied for a pot
+     */
+    public double getWinRate(Player player) {
+        int s = find(player);
+        return s < 0 ? 0 : percentage(wins[s], games[s]);
+    }
+
+    /**
+     * @return average chips won per game, negative when the player lost
+     */
+    public double getChipsPerGame(Player player) {
+        int s = find(player);
+        return s < 0 || games[s] == 0 ? 0 : (double) chipsWon[s] / games[s];
+    }
+
+    /**
+     * @return a table with the statistics of every player seen so far
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-16s %8s %6s %6s %6s %6s %6s %6s %10s%n",
+                "player", "games", "vpip", "pfr", "af", "f2r", "sd", "won", "chips/game"));
+        for (Player p : players) {
+            sb.append(String.format("%-16s %8d %6.1f %6.1f %6.2f %6.1f %6.1f %6.1f %10.1f%n",
+                    p, getGames(p), getVpip(p), getPreflopRaise(p), getAggression(p),
+                    getFoldToRaise(p), getShowdown(p), getWinRate(p), getChipsPerGame(p)));
+        }
+        return sb.toString();
+    }
+}
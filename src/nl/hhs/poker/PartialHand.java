@@ -0,0 +1,152 @@
+package nl.hhs.poker;
+
+/**
+ * Evaluation state of an incomplete set of cards, typically the community
+ * cards, to which cards can be added cheaply. The state consists of the card
+ * mask (which holds the faces per suit), the number of cards per face and the
+ * number of cards per suit. Adding a card updates these in constant time, and
+ * straights, pairs and flushes are found from them by {@link HandEvaluator}
+ * without looking at the individual cards again.
+ * <p/>
+ * At a showdown the community cards are processed only once, after which
+ * every player's hole cards are evaluated by {@link #evaluate(int, int)} or all
+ * at once by {@link #evaluate(int[], int[], int)}.
+ */
+public final class PartialHand {
+
+    private static final long facecount[] = new long[Card.CARDS];
+    private static final int suitcount[] = new int[Card.CARDS];
+
+    static {
+        for (int card = 0; card < Card.CARDS; card++) {
+            facecount[card] = 1L << (4 * Card.face(card));
+            suitcount[card] = 1 << (4 * Card.suit(card));
+        }
+    }
+
+    private long mask;
+    private long counts; // number of cards per face, 4 bits per face
+    private int suits; // number of cards per suit, 4 bits per suit
+    private int cards;
+
+    public PartialHand() {
+    }
+
+    /**
+     * @param mask card mask of the cards to start with, see {@link Card}
+     */
+    public PartialHand(long mask) {
+        add(mask);
+    }
+
+    /**
+     * Removes all cards
+     */
+    public void clear() {
+        mask = 0;
+        counts = 0;
+        suits = 0;
+        cards = 0;
+    }
+
+    /**
+     * Replaces the cards in this hand by those in the given hand
+     */
+    public void set(PartialHand hand) {
+        mask = hand.mask;
+        counts = hand.counts;
+        suits = hand.suits;
+        cards = hand.cards;
+    }
+
+    /**
+     * Adds the card with the given index 0-51
+     */
+    public void add(int card) {
+        long m = Card.mask(card);
+        if ((mask & m) != 0) {
+            throw new IllegalArgumentException("Card " + Card.valueOf(card) + " was already added");
+        }
+        if (cards == HandEvaluator.MAX_CARDS) {
+            throw new IllegalArgumentException("Cannot hold more than " + HandEvaluator.MAX_CARDS + " cards");
+        }
+        mask |= m;
+        counts += facecount[card];
+        suits += suitcount[card];
+        cards++;
+    }
+
+    /**
+     * Adds all cards in the given card mask
+     */
+    public void add(long mask) {
+        for (; mask != 0; mask &= mask - 1) {
+            add(Long.numberOfTrailingZeros(mask));
+        }
+    }
+
+    /**
+     * @return card mask of the cards in this hand
+     */
+    public long getMask() {
+        return mask;
+    }
+
+    /**
+     * @return number of cards in this hand
+     */
+    public int size() {
+        return cards;
+    }
+
+    /**
+     * @return strength of the cards in this hand, see {@link HandEvaluator}
+     */
+    public int evaluate() {
+        return evaluate(mask, counts, suits, cards);
+    }
+
+    /**
+     * @return strength of the cards in this hand together with the given
+     * card, without adding it to this hand. The card must not be in this hand
+     * already, and this hand must hold 6 cards or less.
+     */
+    public int evaluate(int card) {
+        return evaluate(mask | Card.mask(card), counts + facecount[card], suits + suitcount[card], cards + 1);
+    }
+
+    /**
+     * @return strength of the cards in this hand together with the two given
+     * cards, without adding them to this hand. The cards must not be in this
+     * hand already, and this hand must hold 5 cards or less.
+     */
+    public int evaluate(int card1, int card2) {
+        return evaluate(mask | Card.mask(card1) | Card.mask(card2),
+                counts + facecount[card1] + facecount[card2],
+                suits + suitcount[card1] + suitcount[card2],
+                cards + 2);
+    }
+
+    /**
+     * Evaluates the hole cards of several players against this hand.
+     *
+     * @param holecards card indices, two per player
+     * @param strengths receives the strength for each player
+     * @param players number of players to evaluate
+     */
+    public void evaluate(int holecards[], int strengths[], int players) {
+        for (int i = 0; i < players; i++) {
+            strengths[i] = evaluate(holecards[2 * i], holecards[2 * i + 1]);
+        }
+    }
+
+    private static int evaluate(long mask, long counts, int suits, int cards) {
+        // a suit has 5 or more cards when adding 3 sets the high bit of its nibble
+        int flush = (suits + 0x3333) & 0x8888;
+        if (flush != 0) {
+            int suit = Integer.numberOfTrailingZeros(flush) >>> 2;
+            return HandEvaluator.evaluateFlush(Card.faces(mask, suit));
+        }
+        return HandEvaluator.evaluateFaces(counts, cards);
+    }
+}
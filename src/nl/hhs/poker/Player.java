@@ -1,5 +1,6 @@
 package nl.hhs.poker;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import nl.hhs.poker.Game.CashTransfer;
 
 /**
@@ -12,13 +13,16 @@ import nl.hhs.poker.Game.CashTransfer;
 public abstract class Player {
    // unique id is used to distinguish between multiple players of the same class
    private static final int startAmount = 10000;
-   protected static int playerid = 0; 
-   private final int id = playerid++;
+   private static final AtomicInteger playerid = new AtomicInteger(); // players may be created concurrently
+   private final int id = playerid.getAndIncrement();
    private int bidround;
+   private int seat; // position of this player in the current game
    private int cash = startAmount;
    
    protected Game game; // WARNING, may set to private, use getGame() instead
    private Hand hand; // private so no other players can see the players hand
+   private DecisionStats decisionStats;
+   private volatile boolean deciding; // a decision runs on another thread
     
    public Player() {
    }
@@ -26,11 +30,29 @@ public abstract class Player {
    /**
     * Used by game to deal a hand.
     */
-   public final void setHand(Game game, Hand hand) {
+   public final void setHand(Game game, Hand hand, int seat) {
        this.game = game;
        this.hand = hand;
+       this.seat = seat;
        this.bidround = 0;
    }
+
+   /**
+    * @return position of this player in the current game, used by the game to
+    * look up the player's state without hashing
+    */
+   final int getSeat() {
+       return seat;
+   }
+   
+   /**
+    * @return statistics of the decisions of this player's class
+    */
+   final DecisionStats getDecisionStats() {
+       if (decisionStats == null)
+           decisionStats = DecisionStats.of(getClass());
+       return decisionStats;
+   }
    
    /**
     * @return only returns Hand when the game indicates it must be shown for showdown 
@@ -52,8 +74,7 @@ public abstract class Player {
     * @return total amount this player has bet in the current game 
     */
    public int getPlayerBidLevel() {
-       Event lastEvent = game.getLastEvent(this);
-       return lastEvent == null?0:lastEvent.bidLevel;
+       return game.getBidLevel(seat);
    }
    
    /**
@@ -61,8 +82,7 @@ public abstract class Player {
     * if the player has no Event in the current game yet.
     */
    public EVENTTYPE getPlayerLastAction() {
-       Event lastEvent = game.getLastEvent(this);
-       return lastEvent == null?null:lastEvent.type;
+       return game.getLastAction(seat);
    }
    
    /**
@@ -73,6 +93,13 @@ public abstract class Player {
        return cash;
    }
    
+   /**
+    * Used when a game is replayed, to start with the chips of the recorded game
+    */
+   final void setChips(int chips) {
+       cash = chips;
+   }
+   
    /**
     * @return true if the player has no chips left 
     */
@@ -99,6 +126,43 @@ public abstract class Player {
        return raise;
    }
    
+   /**
+    * Used by game to ask for a bid on another thread. Unlike
+    * {@link #raise(int)} the bid is not counted, the game counts it with
+    * {@link #decided()} when it takes the bid in time, so a decision that
+    * completes after the game abandoned it does not count as a bid.
+    */
+   final int decide(int gameBidLevel) {
+       return raise(gameBidLevel, hand);
+   }
+
+   /**
+    * Used by game to count a bid that was asked with {@link #decide(int)}.
+    */
+   final void decided() {
+       bidround++;
+   }
+
+   /**
+    * @return true while a decision of this player runs on another thread,
+    * also after the game stopped waiting for it
+    */
+   final boolean isDeciding() {
+       return deciding;
+   }
+
+   final void setDeciding(boolean deciding) {
+       this.deciding = deciding;
+   }
+   
+   /**
+    * @return what this player's hand makes with the community cards dealt
+    * so far: the made hand, draws and outs, see {@link HandState}
+    */
+   protected final HandState getHandState() {
+       return game.getHandState(seat);
+   }
+   
    /**
     * @return the number of times the player has made a bid in this game
     */
@@ -0,0 +1,152 @@
+package nl.hhs.poker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Equity of the starting hands before the flop, read from precomputed tables
+ * instead of simulated. The 1326 possible hole cards fall into 169 classes:
+ * 13 pairs, 78 suited and 78 offsuit face combinations, which all have the
+ * same equity because the suits are interchangeable before the flop. A class
+ * is numbered like a cell of the usual 13 x 13 grid, high face * 13 + low
+ * face for suited hands and low face * 13 + high face for offsuit hands, so
+ * pairs lie on the diagonal.
+ * <p/>
+ * The tables hold the equity of every class against 1 to
+ * {@link #MAX_OPPONENTS} opponents with random cards, and the exact equity
+ * of every class against every other class heads-up. They are written by
+ * {@link PreflopEquityGenerator} to the resource {@value #RESOURCE} next to
+ * this class, which is mapped into memory on the first lookup, so a lookup
+ * is a single read from the mapped buffer.
+ */
+public final class PreflopEquity {
+
+    public static final int CLASSES = Card.FACES * Card.FACES;
+    public static final int MAX_OPPONENTS = 9;
+    static final String RESOURCE = "preflop.eq";
+    static final int MAGIC = 0x50464551; // "PFEQ"
+    static final int VERSION = 1;
+    static final int HEADER = 16; // magic, version, classes, opponents
+    static final int HEADS_UP = HEADER + 4 * CLASSES * MAX_OPPONENTS;
+    static final int SIZE = HEADS_UP + 4 * CLASSES * CLASSES;
+    private static final String faces = "23456789TJQKA";
+
+    private PreflopEquity() {
+    }
+
+    /**
+     * @return class 0-168 of the hole cards with the given indices 0-51
+     */
+    public static int classOf(int card1, int card2) {
+        int face1 = Card.face(card1);
+        int face2 = Card.face(card2);
+        int high = Math.max(face1, face2);
+        int low = Math.min(face1, face2);
+        return Card.suit(card1) == Card.suit(card2) ? high * Card.FACES + low : low * Card.FACES + high;
+    }
+
+    /**
+     * @return class 0-168 of the hole cards
+     */
+    public static int classOf(Hand hand) {
+        return classOf(hand.getCardIndex(0), hand.getCardIndex(1));
+    }
+
+    /**
+     * @return the hand class as it is usually written, e.g. AKs, T9o or 77
+     */
+    public static String describe(int handClass) {
+        int high = Math.max(handClass / Card.FACES, handClass % Card.FACES);
+        int low = Math.min(handClass / Card.FACES, handClass % Card.FACES);
+        String name = "" + faces.charAt(high) + faces.charAt(low);
+        if (high == low) {
+            return name;
+        }
+        return name + (handClass / Card.FACES == high ? "s" : "o");
+    }
+
+    /**
+     * @return percentage of the pot the hand class wins on average against
+     * the given number of opponents with random cards, if all see the showdown
+     */
+    public static double getEquity(int handClass, int opponents) {
+        if (opponents < 1 || opponents > MAX_OPPONENTS) {
+            throw new IllegalArgumentException("Equity is known for 1 to " + MAX_OPPONENTS + " opponents");
+        }
+        return Tables.buffer.getFloat(HEADER + 4 * (handClass * MAX_OPPONENTS + opponents - 1));
+    }
+
+    /**
+     * @return percentage of the pot the hand wins on average against the
+     * given number of opponents with random cards, if all see the showdown
+     */
+    public static double getEquity(Hand hand, int opponents) {
+        return getEquity(classOf(hand), opponents);
+    }
+
+    /**
+     * @return percentage of the pot the first hand class wins on average
+     * against the second heads-up, over all their hole cards that do not
+     * share a card
+     */
+    public static double getHeadsUp(int handClass, int otherClass) {
+        return Tables.buffer.getFloat(HEADS_UP + 4 * (handClass * CLASSES + otherClass));
+    }
+
+    /**
+     * @return percentage of the pot the hand wins on average against the
+     * class of the other hand heads-up, see {@link #getHeadsUp(int, int)}
+     */
+    public static double getHeadsUp(Hand hand, Hand other) {
+        return getHeadsUp(classOf(hand), classOf(other));
+    }
+
+    /**
+     * Holds the mapped tables, loaded when the first equity is looked up, so
+     * the classes can be used by the generator before the tables exist.
+     */
+    private static final class Tables {
+
+        static final ByteBuffer buffer = load();
+
+        private static ByteBuffer load() {
+            URL url = PreflopEquity.class.getResource(RESOURCE);
+            if (url == null) {
+                throw new IllegalStateException("Resource " + RESOURCE + " not found, run PreflopEquityGenerator");
+            }
+            ByteBuffer buffer;
+            try {
+                if ("file".equals(url.getProtocol())) {
+                    try (RandomAccessFile file = new RandomAccessFile(new File(url.toURI()), "r")) {
+                        buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+                    }
+                } else {
+                    // e.g. inside a jar, which cannot be mapped
+                    try (InputStream in = url.openStream()) {
+                        ByteArrayOutputStream bytes = new ByteArrayOutputStream(SIZE);
+                        byte chunk[] = new byte[8192];
+                        for (int n; (n = in.read(chunk)) > 0;) {
+                            bytes.write(chunk, 0, n);
+                        }
+                        buffer = ByteBuffer.allocateDirect(bytes.size());
+                        buffer.put(bytes.toByteArray()).flip();
+                    }
+                }
+            } catch (IOException | URISyntaxException ex) {
+                throw new IllegalStateException("Cannot read " + url, ex);
+            }
+            if (buffer.capacity() != SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getInt(8) != CLASSES || buffer.getInt(12) != MAX_OPPONENTS) {
+                throw new IllegalStateException(url + " does not hold version " + VERSION + " preflop equity tables");
+            }
+            return buffer;
+        }
+    }
+}
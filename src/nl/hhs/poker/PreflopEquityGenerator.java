@@ -0,0 +1,283 @@
+package nl.hhs.poker;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes the tables of {@link PreflopEquity} and writes them to a file:
+ * <pre>
+ * java nl.hhs.poker.PreflopEquityGenerator [file [precision [millis]]]
+ * </pre>
+ * or <code>ant preflop-tables</code>, which writes the resource in the
+ * source folder.
+ * <p/>
+ * The heads-up table is exact. Enumerating every runout for every pair of
+ * hole cards would take hours, so instead every board is evaluated once for
+ * all hole cards that do not use its cards, the hole cards are sorted by
+ * strength, and every hand counts the hands of each class it beats from
+ * running counts per class and per card, which removes the hands that share
+ * a card with it. Boards that only differ by a permutation of the suits give
+ * the same counts per class, so only one board of every such group is
+ * evaluated, weighted by the size of the group. The boards are divided over
+ * a fork/join pool by their lowest card.
+ * <p/>
+ * The equity against one random opponent follows exactly from the heads-up
+ * table, against more opponents it is simulated by {@link EquityCalculator}
+ * to the given precision.
+ */
+public final class PreflopEquityGenerator {
+
+    private static final int CLASSES = PreflopEquity.CLASSES;
+    private static final int HANDS = 1326;
+    private static final long RUNOUTS = 1712304; // boards per pair of hole cards, C(48,5)
+    private static final int card1[] = new int[HANDS];
+    private static final int card2[] = new int[HANDS];
+    private static final long masks[] = new long[HANDS];
+    private static final int classes[] = new int[HANDS];
+    private static final int permutations[][] = new int[24][];
+
+    static {
+        int hand = 0;
+        for (int c1 = 0; c1 < Card.CARDS; c1++) {
+            for (int c2 = c1 + 1; c2 < Card.CARDS; c2++) {
+                card1[hand] = c1;
+                card2[hand] = c2;
+                masks[hand] = Card.mask(c1) | Card.mask(c2);
+                classes[hand++] = PreflopEquity.classOf(c1, c2);
+            }
+        }
+        int p = 0;
+        for (int a = 0; a < Card.SUITS; a++) {
+            for (int b = 0; b < Card.SUITS; b++) {
+                for (int c = 0; c < Card.SUITS; c++) {
+                    int d = 6 - a - b - c;
+                    if (a != b && a != c && b != c && d != a && d != b && d != c) {
+                        permutations[p++] = new int[]{a, b, c, d};
+                    }
+                }
+            }
+        }
+    }
+
+    private PreflopEquityGenerator() {
+    }
+
+    public static void main(String args[]) throws IOException {
+        File file = new File(args.length > 0 ? args[0] : PreflopEquity.RESOURCE);
+        double precision = args.length > 1 ? Double.parseDouble(args[1]) : 0.1;
+        long millis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+        ForkJoinPool pool = new ForkJoinPool();
+        long start = System.currentTimeMillis();
+        float headsUp[] = headsUp(pool);
+        System.out.println("heads-up table in " + (System.currentTimeMillis() - start) + " ms");
+        start = System.currentTimeMillis();
+        float vsRandom[] = vsRandom(headsUp, new EquityCalculator(pool), precision, millis);
+        System.out.println("multiway table in " + (System.currentTimeMillis() - start) + " ms");
+        write(file, vsRandom, headsUp);
+        System.out.println("written to " + file);
+    }
+
+    /**
+     * @return the exact heads-up equity in percent of every class against
+     * every class, indexed by class * 169 + other class
+     */
+    static float[] headsUp(ForkJoinPool pool) {
+        long wins[] = pool.invoke(new Sweep(0, Card.CARDS - 4));
+        long pairs[] = pairs();
+        float equity[] = new float[CLASSES * CLASSES];
+        for (int a = 0; a < CLASSES; a++) {
+            for (int b = 0; b < CLASSES; b++) {
+                // every runout that is not won by either hand is a tie
+                double showdowns = (double) pairs[a * CLASSES + b] * RUNOUTS;
+                double net = wins[a * CLASSES + b] - wins[b * CLASSES + a];
+                equity[a * CLASSES + b] = (float) (100.0 * (showdowns + net) / (2 * showdowns));
+            }
+        }
+        return equity;
+    }
+
+    /**
+     * @return number of pairs of hole cards of the two classes that do not
+     * share a card, indexed by class * 169 + other class
+     */
+    private static long[] pairs() {
+        long pairs[] = new long[CLASSES * CLASSES];
+        for (int i = 0; i < HANDS; i++) {
+            for (int j = 0; j < HANDS; j++) {
+                if ((masks[i] & masks[j]) == 0) {
+                    pairs[classes[i] * CLASSES + classes[j]]++;
+                }
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * @return equity in percent of every class against 1 to 9 opponents with
+     * random cards, indexed by class * 9 + opponents - 1
+     */
+    static float[] vsRandom(float headsUp[], EquityCalculator calculator, double precision, long millis) {
+        int opponents = PreflopEquity.MAX_OPPONENTS;
+        long pairs[] = pairs();
+        float equity[] = new float[CLASSES * opponents];
+        for (int a = 0; a < CLASSES; a++) {
+            // one opponent holds any class, as often as its hole cards fit
+            double sum = 0;
+            long weight = 0;
+            for (int b = 0; b < CLASSES; b++) {
+                sum += pairs[a * CLASSES + b] * (double) headsUp[a * CLASSES + b];
+                weight += pairs[a * CLASSES + b];
+            }
+            equity[a * opponents] = (float) (sum / weight);
+            long hand[] = {representative(a)};
+            for (int n = 2; n <= opponents; n++) {
+                equity[a * opponents + n - 1] = (float) calculator.simulate(hand, 0, 0, n, precision, millis).getEquity(0);
+            }
+        }
+        return equity;
+    }
+
+    /**
+     * @return card mask of hole cards of the class
+     */
+    static long representative(int handClass) {
+        int high = Math.max(handClass / Card.FACES, handClass % Card.FACES);
+        int low = Math.min(handClass / Card.FACES, handClass % Card.FACES);
+        boolean suited = high != low && handClass / Card.FACES == high;
+        return Card.mask(high) | Card.mask(suited ? low : Card.FACES + low);
+    }
+
+    static void write(File file, float vsRandom[], float headsUp[]) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(PreflopEquity.MAGIC);
+            out.writeInt(PreflopEquity.VERSION);
+            out.writeInt(CLASSES);
+            out.writeInt(PreflopEquity.MAX_OPPONENTS);
+            for (float equity : vsRandom) {
+                out.writeFloat(equity);
+            }
+            for (float equity : headsUp) {
+                out.writeFloat(equity);
+            }
+        }
+    }
+
+    /**
+     * @return the number of boards that equal the board after a permutation
+     * of the suits, or 0 if a permutation gives a lower card mask, so only
+     * the lowest board of every group is evaluated
+     */
+    static int weight(long board) {
+        int same = 0;
+        for (int p[] : permutations) {
+            long permuted = 0;
+            for (int suit = 0; suit < Card.SUITS; suit++) {
+                permuted |= (long) Card.faces(board, suit) << (Card.FACES * p[suit]);
+            }
+            if (permuted < board) {
+                return 0;
+            }
+            if (permuted == board) {
+                same++;
+            }
+        }
+        return permutations.length / same;
+    }
+
+    /**
+     * Counts for all boards of which the lowest card lies in a range how
+     * many runouts every class wins against every class, indexed by class *
+     * 169 + other class. The range is split in halves until it holds a
+     * single lowest card.
+     */
+    @SuppressWarnings("serial") // never serialized
+    private static final class Sweep extends RecursiveTask<long[]> {
+
+        private final int from;
+        private final int to;
+
+        Sweep(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from > 1) {
+                int half = (from + to) >>> 1;
+                Sweep first = new Sweep(from, half);
+                first.fork();
+                long wins[] = new Sweep(half, to).compute();
+                long other[] = first.join();
+                for (int i = 0; i < wins.length; i++) {
+                    wins[i] += other[i];
+                }
+                return wins;
+            }
+            long wins[] = new long[CLASSES * CLASSES];
+            long order[] = new long[HANDS];
+            int below[] = new int[CLASSES]; // hands per class that are weaker
+            int belowCard[] = new int[Card.CARDS * CLASSES]; // of those, per card they hold
+            long low = Card.mask(from);
+            for (int c2 = from + 1; c2 < Card.CARDS; c2++) {
+                for (int c3 = c2 + 1; c3 < Card.CARDS; c3++) {
+                    for (int c4 = c3 + 1; c4 < Card.CARDS; c4++) {
+                        for (int c5 = c4 + 1; c5 < Card.CARDS; c5++) {
+                            long board = low | Card.mask(c2) | Card.mask(c3) | Card.mask(c4) | Card.mask(c5);
+                            int weight = weight(board);
+                            if (weight > 0) {
+                                count(board, weight, wins, order, below, belowCard);
+                            }
+                        }
+                    }
+                }
+            }
+            return wins;
+        }
+
+        private static void count(long mask, int weight, long wins[], long order[], int below[], int belowCard[]) {
+            PartialHand board = new PartialHand(mask);
+            int n = 0;
+            for (int hand = 0; hand < HANDS; hand++) {
+                if ((masks[hand] & mask) == 0) {
+                    order[n++] = (long) board.evaluate(card1[hand], card2[hand]) << 11 | hand;
+                }
+            }
+            Arrays.sort(order, 0, n);
+            Arrays.fill(below, 0);
+            Arrays.fill(belowCard, 0);
+            for (int i = 0; i < n;) {
+                long strength = order[i] >>> 11;
+                int end = i + 1;
+                while (end < n && order[end] >>> 11 == strength) {
+                    end++;
+                }
+                // hands of equal strength tie, so they are counted before
+                // any of them is added to the weaker hands
+                for (int j = i; j < end; j++) {
+                    int hand = (int) (order[j] & 2047);
+                    int row = classes[hand] * CLASSES;
+                    int first = card1[hand] * CLASSES;
+                    int second = card2[hand] * CLASSES;
+                    for (int b = 0; b < CLASSES; b++) {
+                        wins[row + b] += weight * (below[b] - belowCard[first + b] - belowCard[second + b]);
+                    }
+                }
+                for (int j = i; j < end; j++) {
+                    int hand = (int) (order[j] & 2047);
+                    int c = classes[hand];
+                    below[c]++;
+                    belowCard[card1[hand] * CLASSES + c]++;
+                    belowCard[card2[hand] * CLASSES + c]++;
+                }
+                i = end;
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package nl.hhs.poker;
+
+/**
+ * Categories of poker hands, from weak to strong. The ordinal is stored in the
+ * highest bits of a hand strength, see {@link HandEvaluator}.
+ */
+public enum RANK {
+
+    HIGHCARD("High Card", 5),
+    ONEPAIR("One Pair", 4),
+    TWOPAIR("Two Pair", 3),
+    THREEOFAKIND("Three of a Kind", 3),
+    STRAIGHT("Straight", 1),
+    FLUSH("Flush", 5),
+    FULLHOUSE("Full House", 2),
+    FOUROFAKIND("Four of a Kind", 2),
+    STRAIGHTFLUSH("Straight Flush", 1);
+
+    String label;
+    final int kickers; // number of faces that decide between hands of this rank
+
+    @Override
+    public String toString() {
+        return label;
+    }
+
+    private RANK(String label, int kickers) {
+        this.label = label;
+        this.kickers = kickers;
+    }
+}
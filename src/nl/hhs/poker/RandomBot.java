@@ -8,7 +8,19 @@ import java.util.Random;
  */
 public class RandomBot extends Player {
 
-    private static final Random randNum = new Random();
+    private final Random randNum; // not shared, so matches can run in parallel
+
+    public RandomBot() {
+        randNum = new Random();
+    }
+
+    /**
+     * @param seed so the bot makes the same choices when a match is played
+     * again
+     */
+    public RandomBot(long seed) {
+        randNum = new Random(seed);
+    }
 
     @Override
     public int raise(int gameBidLevel, Hand hand) {
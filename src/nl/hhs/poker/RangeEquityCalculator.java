@@ -0,0 +1,434 @@
+package nl.hhs.poker;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Computes the equity of a {@link HandRange} against another range, with
+ * the board dealt so far and cards that are known to be out of play. Every
+ * showdown of a pair of hole cards counts with the product of their weights,
+ * and hole cards that use a known card, or a card of the other player, are
+ * left out.
+ * <p/>
+ * The hole cards are not paired one by one: every board is evaluated once
+ * for all hole cards of both ranges that do not use its cards, these are
+ * sorted by strength, and for every hole cards of the first range the
+ * weight of the weaker and equal hole cards of the second range is read
+ * from running sums, minus the running sums of the hole cards that share one
+ * of its cards. A board therefore costs one evaluation and a sort for every
+ * hole cards instead of one showdown for every pair.
+ * <p/>
+ * When the boards times the hole cards stay below {@link #EXACT}
+ * evaluations, e.g. from the flop on, every remaining board is enumerated,
+ * otherwise boards are dealt at random until the 95% confidence interval is
+ * narrow enough or the time budget runs out. In both cases the boards are
+ * split over the threads of a fork/join pool.
+ */
+public final class RangeEquityCalculator {
+
+    /**
+     * the largest number of evaluations for which the equity is enumerated
+     * exactly by {@link #calculate}
+     */
+    public static final long EXACT = 20000000;
+    private static final int FIRST_ROUND = 1000;
+    private static final int LEAF_BOARDS = 64;
+    private final ForkJoinPool pool;
+
+    public RangeEquityCalculator() {
+        this(EquityCalculator.defaultPool);
+    }
+
+    public RangeEquityCalculator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param hero range of the first player
+     * @param villain range of the second player
+     * @param board community cards dealt so far, e.g.
+     * {@link Game#getCommunityCards()}
+     * @param dead cards that are known to be out of play, may be empty
+     * @param precision when simulated, stop when the 95% confidence interval
+     * is within plus or minus this percentage
+     * @param millis when simulated, stop when this time budget in
+     * milliseconds is spent
+     * @return the equity of the first player as player 0 and of the second
+     * as player 1
+     */
+    public Equity calculate(HandRange hero, HandRange villain, Collection<Card> board, Collection<Card> dead,
+            double precision, long millis) {
+        return calculate(hero, villain, EquityCalculator.mask(board.toArray(new Card[0])),
+                EquityCalculator.mask(dead.toArray(new Card[0])), precision, millis);
+    }
+
+    /**
+     * @param board card mask of the community cards dealt so far, see
+     * {@link Card}
+     * @param dead card mask of cards that are known to be out of play
+     * @see #calculate(HandRange, HandRange, Collection, Collection, double,
+     * long)
+     */
+    public Equity calculate(HandRange hero, HandRange villain, long board, long dead, double precision, long millis) {
+        Setup setup = new Setup(hero, villain, board, dead);
+        if (setup.boards() * setup.combos.length <= EXACT) {
+            return enumerate(setup);
+        }
+        return simulate(setup, precision, millis);
+    }
+
+    /**
+     * Computes the exact equity by evaluating every remaining board.
+     *
+     * @see #calculate(HandRange, HandRange, long, long, double, long)
+     */
+    public Equity enumerate(HandRange hero, HandRange villain, long board, long dead) {
+        return enumerate(new Setup(hero, villain, board, dead));
+    }
+
+    /**
+     * Estimates the equity from boards dealt at random.
+     *
+     * @see #calculate(HandRange, HandRange, long, long, double, long)
+     */
+    public Equity simulate(HandRange hero, HandRange villain, long board, long dead, double precision, long millis) {
+        return simulate(new Setup(hero, villain, board, dead), precision, millis);
+    }
+
+    private Equity enumerate(Setup setup) {
+        int missing = 5 - setup.boardcards;
+        Tally total = missing == 0
+                ? new Boards(setup, 0, 1).compute()
+                : pool.invoke(new Boards(setup, 0, setup.remaining.length - missing + 1));
+        return total.equity(0);
+    }
+
+    private Equity simulate(Setup setup, double precision, long millis) {
+        long deadline = System.nanoTime() + millis * 1000000L;
+        Tally total = new Tally(setup);
+        long round = FIRST_ROUND;
+        while (true) {
+            long start = System.nanoTime();
+            total.add(pool.invoke(new Runouts(setup, round)));
+            long now = System.nanoTime();
+            if (100 * total.error() <= precision || now >= deadline) {
+                break;
+            }
+            // double the round, but do not run past the deadline
+            double perBoard = (double) (now - start) / round;
+            round = Math.max(LEAF_BOARDS, Math.min(2 * round, (long) ((deadline - now) / perBoard)));
+        }
+        return total.equity(total.error());
+    }
+
+    /**
+     * The hole cards of both ranges that do not use a known card, and the
+     * cards the board can be completed with, shared read-only by all tasks.
+     */
+    static final class Setup {
+
+        final long board;
+        final long known;
+        final int boardcards;
+        final int remaining[];
+        final int combos[]; // numbers of the hole cards in either range
+        final double hero[];
+        final double villain[];
+
+        Setup(HandRange heroRange, HandRange villainRange, long board, long dead) {
+            if (Long.bitCount(board) > 5) {
+                throw new IllegalArgumentException("A board has at most 5 cards");
+            }
+            this.board = board;
+            this.known = board | dead;
+            this.boardcards = Long.bitCount(board);
+            int live = 0;
+            int all[] = new int[HandRange.COMBOS];
+            for (int combo = 0; combo < HandRange.COMBOS; combo++) {
+                if ((HandRange.masks[combo] & known) == 0
+                        && (heroRange.getWeight(combo) > 0 || villainRange.getWeight(combo) > 0)) {
+                    all[live++] = combo;
+                }
+            }
+            combos = Arrays.copyOf(all, live);
+            hero = new double[live];
+            villain = new double[live];
+            boolean heroLeft = false;
+            boolean villainLeft = false;
+            for (int i = 0; i < live; i++) {
+                hero[i] = heroRange.getWeight(combos[i]);
+                villain[i] = villainRange.getWeight(combos[i]);
+                heroLeft |= hero[i] > 0;
+                villainLeft |= villain[i] > 0;
+            }
+            if (!heroLeft || !villainLeft) {
+                throw new IllegalArgumentException("Both ranges need hole cards that do not use a known card");
+            }
+            long rest = ~known & ((1L << Card.CARDS) - 1);
+            remaining = new int[Long.bitCount(rest)];
+            for (int i = 0; rest != 0; rest &= rest - 1) {
+                remaining[i++] = Long.numberOfTrailingZeros(rest);
+            }
+        }
+
+        /**
+         * @return number of ways to complete the board
+         */
+        long boards() {
+            long boards = 1;
+            for (int i = 0; i < 5 - boardcards; i++) {
+                boards = boards * (remaining.length - i) / (i + 1);
+            }
+            return boards;
+        }
+    }
+
+    /**
+     * Weighted counts of the showdowns on a number of boards, and the work
+     * arrays to count a board with.
+     */
+    static final class Tally {
+
+        private final Setup setup;
+        long boards;
+        double wins; // weight of the showdowns the first player wins
+        double ties;
+        double showdowns;
+        // sums over the boards of the share of the first player and of the
+        // showdowns, for the variance of their ratio
+        double shareSquares;
+        double products;
+        double showdownSquares;
+        private long order[];
+        private double villainCards[];
+        private double weakerCards[];
+        private double equalCards[];
+
+        Tally(Setup setup) {
+            this.setup = setup;
+        }
+
+        /**
+         * Counts the showdowns of all pairs of hole cards on the complete
+         * board.
+         */
+        void count(PartialHand board) {
+            if (order == null) {
+                order = new long[setup.combos.length];
+                villainCards = new double[Card.CARDS];
+                weakerCards = new double[Card.CARDS];
+                equalCards = new double[Card.CARDS];
+            }
+            int first[] = HandRange.first;
+            int second[] = HandRange.second;
+            double hero[] = setup.hero;
+            double villain[] = setup.villain;
+            long mask = board.getMask();
+            int n = 0;
+            for (int i = 0; i < setup.combos.length; i++) {
+                int combo = setup.combos[i];
+                if ((HandRange.masks[combo] & mask) == 0) {
+                    order[n++] = (long) board.evaluate(first[combo], second[combo]) << 11 | i;
+                }
+            }
+            Arrays.sort(order, 0, n);
+            Arrays.fill(villainCards, 0);
+            Arrays.fill(weakerCards, 0);
+            double all = 0;
+            for (int j = 0; j < n; j++) {
+                int i = (int) (order[j] & 2047);
+                double w = villain[i];
+                all += w;
+                villainCards[first[setup.combos[i]]] += w;
+                villainCards[second[setup.combos[i]]] += w;
+            }
+            double below = 0;
+            double won = 0;
+            double tied = 0;
+            double total = 0;
+            for (int j = 0; j < n;) {
+                long strength = order[j] >>> 11;
+                int end = j + 1;
+                while (end < n && order[end] >>> 11 == strength) {
+                    end++;
+                }
+                double equal = 0;
+                for (int k = j; k < end; k++) {
+                    int i = (int) (order[k] & 2047);
+                    equal += villain[i];
+                    equalCards[first[setup.combos[i]]] += villain[i];
+                    equalCards[second[setup.combos[i]]] += villain[i];
+                }
+                for (int k = j; k < end; k++) {
+                    int i = (int) (order[k] & 2047);
+                    if (hero[i] > 0) {
+                        int c1 = first[setup.combos[i]];
+                        int c2 = second[setup.combos[i]];
+                        // the same hole cards of the villain share both
+                        // cards, so they are subtracted twice
+                        won += hero[i] * (below - weakerCards[c1] - weakerCards[c2]);
+                        tied += hero[i] * (equal - equalCards[c1] - equalCards[c2] + villain[i]);
+                        total += hero[i] * (all - villainCards[c1] - villainCards[c2] + villain[i]);
+                    }
+                }
+                for (int k = j; k < end; k++) {
+                    int i = (int) (order[k] & 2047);
+                    int c1 = first[setup.combos[i]];
+                    int c2 = second[setup.combos[i]];
+                    weakerCards[c1] += villain[i];
+                    weakerCards[c2] += villain[i];
+                    equalCards[c1] = 0;
+                    equalCards[c2] = 0;
+                }
+                below += equal;
+                j = end;
+            }
+            double share = won + tied / 2;
+            boards++;
+            wins += won;
+            ties += tied;
+            showdowns += total;
+            shareSquares += share * share;
+            products += share * total;
+            showdownSquares += total * total;
+        }
+
+        void add(Tally t) {
+            boards += t.boards;
+            wins += t.wins;
+            ties += t.ties;
+            showdowns += t.showdowns;
+            shareSquares += t.shareSquares;
+            products += t.products;
+            showdownSquares += t.showdownSquares;
+        }
+
+        /**
+         * @return half-width of the 95% confidence interval of the equity,
+         * which is a ratio of two sums over the boards
+         */
+        double error() {
+            if (boards < 2 || showdowns == 0) {
+                return 1;
+            }
+            double equity = (wins + ties / 2) / showdowns;
+            double residuals = shareSquares - 2 * equity * products + equity * equity * showdownSquares;
+            double variance = Math.max(0, residuals) * boards / ((boards - 1) * showdowns * showdowns);
+            return 1.96 * Math.sqrt(variance);
+        }
+
+        Equity equity(double error) {
+            if (showdowns == 0) {
+                throw new IllegalArgumentException("The ranges have no hole cards that fit together");
+            }
+            double losses = showdowns - wins - ties;
+            return new Equity(boards, showdowns, new double[]{wins, losses}, new double[]{ties, ties},
+                    new double[]{wins + ties / 2, losses + ties / 2}, error);
+        }
+    }
+
+    /**
+     * Enumerates all boards of which the first added card lies in a range of
+     * positions in the remaining cards, see the Boards of
+     * {@link EquityCalculator}.
+     */
+    @SuppressWarnings("serial") // never serialized
+    private static final class Boards extends RecursiveTask<Tally> {
+
+        private final Setup setup;
+        private final int from;
+        private final int to;
+
+        Boards(Setup setup, int from, int to) {
+            this.setup = setup;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (to - from > 1) {
+                int half = (from + to) >>> 1;
+                Boards first = new Boards(setup, from, half);
+                first.fork();
+                Tally tally = new Boards(setup, half, to).compute();
+                tally.add(first.join());
+                return tally;
+            }
+            int missing = 5 - setup.boardcards;
+            PartialHand boards[] = new PartialHand[missing + 1];
+            for (int i = 0; i <= missing; i++) {
+                boards[i] = new PartialHand();
+            }
+            boards[0].add(setup.board);
+            Tally tally = new Tally(setup);
+            if (missing == 0) {
+                tally.count(boards[0]);
+            } else {
+                boards[1].set(boards[0]);
+                boards[1].add(setup.remaining[from]);
+                enumerate(boards, 1, from + 1, tally);
+            }
+            return tally;
+        }
+
+        private void enumerate(PartialHand boards[], int depth, int next, Tally tally) {
+            if (depth == boards.length - 1) {
+                tally.count(boards[depth]);
+                return;
+            }
+            int remaining[] = setup.remaining;
+            int last = remaining.length - (boards.length - 1 - depth);
+            for (int i = next; i <= last; i++) {
+                boards[depth + 1].set(boards[depth]);
+                boards[depth + 1].add(remaining[i]);
+                enumerate(boards, depth + 1, i + 1, tally);
+            }
+        }
+    }
+
+    /**
+     * Deals a number of random boards, split in halves until small enough to
+     * run on one thread.
+     */
+    @SuppressWarnings("serial") // never serialized
+    private static final class Runouts extends RecursiveTask<Tally> {
+
+        private final Setup setup;
+        private final long boards;
+
+        Runouts(Setup setup, long boards) {
+            this.setup = setup;
+            this.boards = boards;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (boards > LEAF_BOARDS) {
+                Runouts first = new Runouts(setup, boards / 2);
+                first.fork();
+                Tally tally = new Runouts(setup, boards - boards / 2).compute();
+                tally.add(first.join());
+                return tally;
+            }
+            Deck deck = new Deck(ThreadLocalRandom.current());
+            deck.remove(setup.known);
+            int missing = 5 - setup.boardcards;
+            PartialHand known = new PartialHand(setup.board);
+            PartialHand board = new PartialHand();
+            Tally tally = new Tally(setup);
+            for (long b = 0; b < boards; b++) {
+                deck.reset();
+                board.set(known);
+                for (int i = 0; i < missing; i++) {
+                    board.add(deck.dealCardIndex());
+                }
+                tally.count(board);
+            }
+            return tally;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package nl.hhs.poker;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Plays a recorded game again, see {@link HandHistoryRecorder}. The cards are
+ * dealt from the recorded seed and the players are stand-ins that make the
+ * recorded decisions, so no bots are asked and the game is played exactly as
+ * recorded. A Match that was recorded on its own can be fast-forwarded to any
+ * game: the games before it are skipped without being played, because every
+ * record holds the chips of the players at the start of the game.
+ */
+public final class Replay {
+
+    private Replay() {
+    }
+
+    /**
+     * Skips the given number of games of the reader and replays the next.
+     *
+     * @param game number of the game counting from 0
+     * @return the replayed game, or null if there are not that many games
+     */
+    public static Game replay(HandHistoryReader reader, long game) throws IOException {
+        if (!reader.skip(game) || !reader.nextGame()) {
+            return null;
+        }
+        return replay(reader);
+    }
+
+    /**
+     * Replays the current game of the reader, reading its entries.
+     *
+     * @return the replayed game, with the players' chips after the game
+     * @throws IllegalStateException if the game does not play as recorded
+     */
+    public static Game replay(HandHistoryReader reader) {
+        int seats = reader.getSeats();
+        ArrayList<Player> players = new ArrayList(seats);
+        for (int seat = 0; seat < seats; seat++) {
+            Stand stand = new Stand(seat);
+            stand.setChips(reader.getStartChips(seat));
+            players.add(stand);
+        }
+        while (reader.nextEntry()) {
+            EVENTTYPE type = reader.getType();
+            if (type != null && type.ordinal() >= EVENTTYPE.PASS.ordinal() && type.ordinal() <= EVENTTYPE.RAISE.ordinal()) {
+                ((Stand) players.get(reader.getSeat())).add(type, reader.getValue());
+            }
+        }
+        Game game = new Game(players, new Deck(), reader.getSeed(), new GameListener[0]);
+        for (int seat = 0; seat < seats; seat++) {
+            if (game.getHoleCards(seat) != reader.getHoleCards(seat)) {
+                throw new IllegalStateException("Seed " + reader.getSeed() + " does not deal the recorded cards");
+            }
+        }
+        Match.play(game);
+        for (Player player : players) {
+            ((Stand) player).finished();
+        }
+        return game;
+    }
+
+    /**
+     * A player that makes the recorded decisions of one seat.
+     */
+    private static final class Stand extends Player {
+
+        private final int seat;
+        private EVENTTYPE types[] = new EVENTTYPE[8];
+        private int totals[] = new int[8];
+        private int decisions = 0;
+        private int next = 0;
+
+        Stand(int seat) {
+            this.seat = seat;
+        }
+
+        void add(EVENTTYPE type, int total) {
+            if (decisions == types.length) {
+                types = Arrays.copyOf(types, 2 * decisions);
+                totals = Arrays.copyOf(totals, 2 * decisions);
+            }
+            types[decisions] = type;
+            totals[decisions++] = total;
+        }
+
+        void finished() {
+            if (next != decisions) {
+                throw new IllegalStateException("Seat " + seat + " made " + next + " of " + decisions + " recorded decisions");
+            }
+        }
+
+        @Override
+        protected int raise(int gameBidLevel, Hand hand) {
+            if (next == decisions) {
+                throw new IllegalStateException("Seat " + seat + " has no recorded decision left");
+            }
+            int total = totals[next];
+            switch (types[next++]) {
+                case PASS:
+                case FOLD:
+                    return 0;
+                case ALLIN:
+                    return Integer.MAX_VALUE;
+                default:
+                    return total - getPlayerBidLevel();
+            }
+        }
+
+        @Override
+        public String name() {
+            return "Seat" + seat + "-";
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package nl.hhs.poker;
+
+import java.util.Arrays;
+
+/**
+ * Divides the pot of a game in layers and gives every layer to the best hand
+ * or hands that put in chips for that layer. A layer lies between two
+ * successive contributions, every player that put in at least the top of the
+ * layer pays the height of the layer, so a player that went all-in short
+ * only wins the layers below the all-in amount, and the layers above go to
+ * the next best hand. Chips that no player that has not folded can win are
+ * returned to the players that put them in.
+ * <p/>
+ * The contributions are sorted once, and the layers are given out from the
+ * top down while the group of best hands grows, so the pot is divided in
+ * O(n log n) with primitive arrays only.
+ */
+final class SidePots {
+
+    private SidePots() {
+    }
+
+    /**
+     * @param contribution chips put in per seat
+     * @param strength strength of the hand per seat, only used for the
+     * eligible seats, see {@link HandEvaluator}
+     * @param eligible per seat true if the player has not folded
+     * @param won is filled with the chips every seat gets from the pot,
+     * including chips that are returned
+     * @param winners is filled with the number of players every seat shares
+     * the layers it won with, including the seat itself, 0 if the seat won no
+     * layer
+     */
+    static void award(int contribution[], int strength[], boolean eligible[], int won[], int winners[]) {
+        int n = contribution.length;
+        int cap = 0; // no player that has not folded put in more
+        for (int seat = 0; seat < n; seat++) {
+            if (eligible[seat]) {
+                cap = Math.max(cap, contribution[seat]);
+            }
+        }
+        long order[] = new long[n];
+        for (int seat = 0; seat < n; seat++) {
+            int c = Math.min(contribution[seat], cap);
+            won[seat] = contribution[seat] - c;
+            winners[seat] = 0;
+            order[seat] = (long) c << 32 | seat;
+        }
+        Arrays.sort(order);
+        // the group of best hands among the seats that reach the current
+        // layer, each member wins what was shared out since it joined
+        int group[] = new int[n];
+        long joined[] = new long[n];
+        int joinedLayers[] = new int[n];
+        int size = 0;
+        int best = 0;
+        long shared = 0; // chips per member shared out so far
+        int layers = 0; // layers shared out so far
+        for (int i = n - 1; i >= 0; i--) {
+            int seat = (int) order[i];
+            int top = (int) (order[i] >>> 32);
+            if (eligible[seat]) {
+                if (size == 0 || strength[seat] > best) {
+                    close(group, joined, joinedLayers, size, shared, layers, won, winners);
+                    size = 0;
+                    best = strength[seat];
+                }
+                if (strength[seat] == best) {
+                    group[size] = seat;
+                    joinedLayers[size] = layers;
+                    joined[size++] = shared;
+                }
+            }
+            int below = i > 0 ? (int) (order[i - 1] >>> 32) : 0;
+            if (top > below) {
+                // all seats from i up put in the whole layer
+                long layer = (long) (top - below) * (n - i);
+                shared += layer / size;
+                // odd chips go to the member that put in least, fewer than
+                // the members so they fit an int
+                won[group[size - 1]] += (int) (layer % size);
+                if (n - i > 1) {
+                    // a layer of one seat only returns its own chips
+                    layers++;
+                }
+            }
+        }
+        close(group, joined, joinedLayers, size, shared, layers, won, winners);
+    }
+
+    /**
+     * Pays the members of a group that is beaten by a better hand, only the
+     * members that were in the group while a layer was shared out won.
+     */
+    private static void close(int group[], long joined[], int joinedLayers[], int size, long shared, int layers,
+            int won[], int winners[]) {
+        for (int i = 0; i < size; i++) {
+            // at most the pot, which the Game keeps in an int
+            won[group[i]] += Math.toIntExact(shared - joined[i]);
+            if (layers > joinedLayers[i]) {
+                winners[group[i]] = size;
+            }
+        }
+    }
+}
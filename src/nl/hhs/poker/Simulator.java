@@ -0,0 +1,259 @@
+package nl.hhs.poker;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Plays many independent Matches between the same line-up of bot classes on
+ * a pool of threads, without printing anything. Every match gets new bot
+ * instances and its own Random, seeded from the random generator of the
+ * thread that plays it, so matches share no state. The results are counted
+ * per bot class in lock-free counters: finishing positions, win rate and the
+ * average chips after each of the first games.
+ */
+public final class Simulator {
+
+    /**
+     * number of games for which the average chips are tracked
+     */
+    public static final int TRAJECTORY = 1000;
+    private final List<Class<? extends Player>> seats;
+    private final int threads;
+    private final int maxGames;
+    private final Map<Class<? extends Player>, BotStats> stats = new LinkedHashMap();
+    private final BotStats seatStats[];
+    private final AtomicLong matches = new AtomicLong();
+    private final AtomicLong unfinished = new AtomicLong();
+    private final AtomicLong games = new AtomicLong();
+
+    /**
+     * @param seats the bot class for every seat, in the order of the first game
+     * @param threads number of matches played at the same time
+     * @param maxGames a match that is not decided after this many games is
+     * stopped, and the players are ranked by their chips
+     */
+    public Simulator(List<Class<? extends Player>> seats, int threads, int maxGames) {
+        if (seats.size() < 2) {
+            throw new IllegalArgumentException("A match needs at least two players");
+        }
+        this.seats = new ArrayList(seats);
+        this.threads = threads;
+        this.maxGames = maxGames;
+        seatStats = new BotStats[seats.size()];
+        for (int i = 0; i < seatStats.length; i++) {
+            Class<? extends Player> bot = seats.get(i);
+            newPlayer(bot); // fail early when the bot cannot be created
+            if (!stats.containsKey(bot)) {
+                stats.put(bot, new BotStats(seats.size()));
+            }
+            seatStats[i] = stats.get(bot);
+        }
+    }
+
+    /**
+     * Plays the given number of matches and adds the results to the totals
+     * of this Simulator.
+     */
+    public void run(long matches) throws InterruptedException {
+        final AtomicLong remaining = new AtomicLong(matches);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            ArrayList<Future<?>> workers = new ArrayList();
+            for (int i = 0; i < threads; i++) {
+                workers.add(pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        while (remaining.getAndDecrement() > 0) {
+                            playMatch(new Random(ThreadLocalRandom.current().nextLong()));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("Simulation failed", ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void playMatch(Random random) {
+        int n = seats.size();
+        ArrayList<Player> players = new ArrayList(n);
+        for (Class<? extends Player> bot : seats) {
+            players.add(newPlayer(bot));
+        }
+        Match match = new Match(players, random);
+        int position[] = new int[n];
+        int chips[] = new int[n];
+        int left = n;
+        int game = 0;
+        for (; left > 1 && game < maxGames; game++) {
+            for (int i = 0; i < n; i++) {
+                chips[i] = players.get(i).chipsOwned();
+            }
+            match.playGame();
+            match.moveDealer();
+            int busted = 0;
+            for (int i = 0; i < n; i++) {
+                if (position[i] == 0 && players.get(i).isBankrupt()) {
+                    busted++;
+                }
+            }
+            if (busted > 0) {
+                // players that went out in the same game are ranked by the
+                // chips they started the game with
+                left -= busted;
+                rank(players, position, chips, left + 1, true);
+            }
+            if (game < TRAJECTORY) {
+                for (int i = 0; i < n; i++) {
+                    seatStats[i].chips(game, players.get(i).chipsOwned());
+                }
+            }
+        }
+        if (left > 1) {
+            unfinished.incrementAndGet();
+            for (int i = 0; i < n; i++) {
+                chips[i] = players.get(i).chipsOwned();
+            }
+        }
+        rank(players, position, chips, 1, false);
+        for (int i = 0; i < n; i++) {
+            seatStats[i].finish(position[i]);
+        }
+        matches.incrementAndGet();
+        games.addAndGet(game);
+    }
+
+    /**
+     * Assigns positions from first onwards to the players that have no
+     * position yet, in order of the given chips, either only to the players
+     * that are bankrupt or to all.
+     */
+    private static void rank(ArrayList<Player> players, int position[], int chips[], int first, boolean bankrupt) {
+        int p = first;
+        while (true) {
+            int best = -1;
+            for (int i = 0; i < position.length; i++) {
+                if (position[i] == 0 && (!bankrupt || players.get(i).isBankrupt())
+                        && (best < 0 || chips[i] > chips[best])) {
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                return;
+            }
+            position[best] = p++;
+        }
+    }
+
+    private static Player newPlayer(Class<? extends Player> bot) {
+        try {
+            return bot.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalArgumentException("Cannot create a " + bot.getName(), ex);
+        }
+    }
+
+    /**
+     * @return number of matches played
+     */
+    public long getMatches() {
+        return matches.get();
+    }
+
+    /**
+     * @return percentage of the seats of this bot class that won their match
+     */
+    public double getWinRate(Class<? extends Player> bot) {
+        return stats.get(bot).winRate();
+    }
+
+    /**
+     * @return average finishing position of this bot class, 1 is the winner
+     */
+    public double getAveragePosition(Class<? extends Player> bot) {
+        return stats.get(bot).averagePosition();
+    }
+
+    /**
+     * @return average chips of a seat of this bot class after the given game
+     * (counting from 0) in the matches that lasted that long
+     */
+    public double getAverageChips(Class<? extends Player> bot, int game) {
+        return stats.get(bot).averageChips(game);
+    }
+
+    /**
+     * @return a table with the results per bot class
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d matches, %d games, %d not decided after %d games%n",
+                matches.get(), games.get(), unfinished.get(), maxGames));
+        sb.append(String.format("%-16s %8s %8s %8s %10s %10s %10s  %s%n",
+                "bot", "seats", "win%", "avgpos", "chips@10", "chips@100", "chips@1000", "positions"));
+        for (Map.Entry<Class<? extends Player>, BotStats> entry : stats.entrySet()) {
+            BotStats s = entry.getValue();
+            sb.append(String.format("%-16s %8d %8.2f %8.2f %10.0f %10.0f %10.0f  %s%n",
+                    entry.getKey().getSimpleName(), s.seats.get(), s.winRate(), s.averagePosition(),
+                    s.averageChips(9), s.averageChips(99), s.averageChips(TRAJECTORY - 1), s.positions));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Results of all seats of one bot class. The counters are updated by all
+     * threads without locking.
+     */
+    private static final class BotStats {
+
+        final AtomicLong seats = new AtomicLong();
+        final AtomicLongArray positions; // number of times finished 1st, 2nd, ...
+        final AtomicLongArray chipsum = new AtomicLongArray(TRAJECTORY);
+        final AtomicLongArray chipcount = new AtomicLongArray(TRAJECTORY);
+
+        BotStats(int players) {
+            positions = new AtomicLongArray(players);
+        }
+
+        void finish(int position) {
+            seats.incrementAndGet();
+            positions.incrementAndGet(position - 1);
+        }
+
+        void chips(int game, int chips) {
+            chipsum.addAndGet(game, chips);
+            chipcount.incrementAndGet(game);
+        }
+
+        double winRate() {
+            return 100.0 * positions.get(0) / Math.max(1, seats.get());
+        }
+
+        double averagePosition() {
+            long sum = 0;
+            for (int i = 0; i < positions.length(); i++) {
+                sum += (i + 1) * positions.get(i);
+            }
+            return (double) sum / Math.max(1, seats.get());
+        }
+
+        double averageChips(int game) {
+            return (double) chipsum.get(game) / Math.max(1, chipcount.get(game));
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package nl.hhs.poker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A multi-table tournament: the players are divided over tables, every table
+ * is a {@link Match}, and every game of a table is a task on the executor, so
+ * the tables advance independently and as many games run at the same time
+ * as the executor has threads. When a game ends, under the lock of the
+ * tournament, the busted players get their finishing position, and the
+ * tables are balanced: a table that has two players more than the smallest
+ * table moves players there, and when the players left fit on fewer tables,
+ * the table that just finished is broken up and its players go to the
+ * smallest tables. Players only move between games: a table that is playing
+ * receives them when its game ends.
+ * <p/>
+ * The tournament ends when one player has all the chips. The leaderboard
+ * with the chips of all players can be read at any time.
+ */
+public final class Tournament {
+
+    private final Executor executor;
+    private final int tableSize;
+    private final Random random;
+    private final ArrayList<Player> players;
+    private final IdentityHashMap<Player, Integer> index = new IdentityHashMap();
+    private final int chips[]; // per player, after the last game of the player's table
+    private final int position[]; // finishing position per player, 0 while playing
+    private final ArrayList<Table> tables = new ArrayList();
+    private final AtomicLong games = new AtomicLong();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private int left;
+    private boolean started;
+    private Throwable failure;
+
+    /**
+     * @param players the players, all of whom must not be playing elsewhere
+     * @param tableSize the largest number of players at a table, at least 2
+     * @param executor runs the games, e.g. a pool with a thread per core
+     * @param seed the seating and the cards only depend on the seed
+     */
+    public Tournament(List<? extends Player> players, int tableSize, Executor executor, long seed) {
+        if (players.size() < 2 || tableSize < 2) {
+            throw new IllegalArgumentException("A tournament needs at least two players and two seats per table");
+        }
+        this.executor = executor;
+        this.tableSize = tableSize;
+        this.random = new Random(seed);
+        this.players = new ArrayList(players);
+        chips = new int[players.size()];
+        position = new int[players.size()];
+        for (int i = 0; i < this.players.size(); i++) {
+            Player player = this.players.get(i);
+            if (index.put(player, i) != null) {
+                throw new IllegalArgumentException("Player " + player + " is entered twice");
+            }
+            chips[i] = player.chipsOwned();
+        }
+        left = players.size();
+        // deal the shuffled players over as few tables as possible
+        ArrayList<Player> seating = new ArrayList(players);
+        Collections.shuffle(seating, random);
+        int count = tablesNeeded();
+        ArrayList<ArrayList<Player>> lineups = new ArrayList();
+        for (int t = 0; t < count; t++) {
+            lineups.add(new ArrayList());
+        }
+        for (int i = 0; i < seating.size(); i++) {
+            lineups.get(i % count).add(seating.get(i));
+        }
+        for (int t = 0; t < count; t++) {
+            tables.add(new Table(new Match(lineups.get(t), random.nextLong())));
+        }
+    }
+
+    private int tablesNeeded() {
+        return (left + tableSize - 1) / tableSize;
+    }
+
+    /**
+     * Starts a game at every table, the tournament continues on the
+     * executor.
+     */
+    public synchronized void start() {
+        if (started) {
+            throw new IllegalStateException("The tournament has already started");
+        }
+        started = true;
+        for (Table table : tables) {
+            if (table.size() > 1) {
+                schedule(table);
+            }
+        }
+    }
+
+    /**
+     * Starts the tournament if needed and waits until it is won.
+     *
+     * @return the winner
+     */
+    public Player run() throws InterruptedException {
+        synchronized (this) {
+            if (!started) {
+                start();
+            }
+        }
+        finished.await();
+        return getWinner();
+    }
+
+    /**
+     * @return true if the tournament ended within the time
+     */
+    public boolean await(long time, TimeUnit unit) throws InterruptedException {
+        return finished.await(time, unit);
+    }
+
+    private void schedule(final Table table) {
+        table.playing = true;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // the executor would swallow a failure, and the tournament
+                // would never end
+                try {
+                    Game game = table.match.playGame();
+                    games.incrementAndGet();
+                    ended(table, game);
+                } catch (Throwable ex) {
+                    fail(ex);
+                }
+            }
+        });
+    }
+
+    private synchronized void fail(Throwable ex) {
+        if (failure == null) {
+            failure = ex;
+        }
+        finished.countDown();
+    }
+
+    /**
+     * Books the result of a game and moves players, then starts the next
+     * game of the table if it still has players.
+     */
+    private synchronized void ended(Table table, Game game) {
+        table.playing = false;
+        if (failure != null) {
+            return;
+        }
+        // players that went out in the same game are ranked by the chips
+        // they started the game with
+        List<Player> seated = game.getPlayers();
+        ArrayList<Player> busted = new ArrayList();
+        for (Player player : seated) {
+            chips[index.get(player)] = player.chipsOwned();
+            if (player.isBankrupt()) {
+                busted.add(player);
+            }
+        }
+        final Game ended = game;
+        Collections.sort(busted, new Comparator<Player>() {
+            @Override
+            public int compare(Player a, Player b) {
+                return Integer.compare(ended.getStartChips(a.getSeat()), ended.getStartChips(b.getSeat()));
+            }
+        });
+        for (Player player : busted) {
+            position[index.get(player)] = left--;
+        }
+        table.match.moveDealer();
+        for (Player player : table.incoming) {
+            table.match.seat(player);
+        }
+        table.incoming.clear();
+        if (left == 1) {
+            finished.countDown();
+            return;
+        }
+        if (tables.size() > tablesNeeded()) {
+            breakUp(table);
+            return;
+        }
+        while (true) {
+            Table smallest = smallest(table);
+            if (smallest == null || table.size() <= smallest.size() + 1) {
+                break;
+            }
+            List<Player> lineup = table.match.getPlayersLeftInMatch();
+            move(lineup.get(lineup.size() - 1), table, smallest);
+        }
+        if (table.size() > 1) {
+            schedule(table);
+        }
+    }
+
+    /**
+     * Moves all players of the table to the smallest other tables, and
+     * removes the table.
+     */
+    private void breakUp(Table table) {
+        tables.remove(table);
+        ArrayList<Player> moving = new ArrayList(table.match.getPlayersLeftInMatch());
+        for (Player player : moving) {
+            move(player, table, smallest(table));
+        }
+    }
+
+    /**
+     * @return the other table with the fewest players, counting players that
+     * are on their way to it, or null if there is none
+     */
+    private Table smallest(Table except) {
+        Table smallest = null;
+        for (Table t : tables) {
+            if (t != except && (smallest == null || t.size() < smallest.size())) {
+                smallest = t;
+            }
+        }
+        return smallest;
+    }
+
+    private void move(Player player, Table from, Table to) {
+        from.match.unseat(player);
+        if (to.playing) {
+            to.incoming.add(player);
+        } else {
+            to.match.seat(player);
+            if (to.size() == 2) {
+                // the table was waiting for players
+                schedule(to);
+            }
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new RuntimeException("Tournament failed", failure);
+        }
+    }
+
+    /**
+     * @return the player that won, or null if the tournament has not ended
+     */
+    public synchronized Player getWinner() {
+        checkFailure();
+        if (left > 1) {
+            return null;
+        }
+        for (int i = 0; i < position.length; i++) {
+            if (position[i] == 0) {
+                return players.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return all players, the players that are still in by their chips
+     * after their last game, followed by the busted players by their
+     * finishing position
+     */
+    public synchronized List<Player> getLeaderboard() {
+        checkFailure();
+        final int rank[] = new int[players.size()];
+        ArrayList<Player> board = new ArrayList(players);
+        for (int i = 0; i < rank.length; i++) {
+            // still playing ranks above every finishing position
+            rank[i] = position[i] == 0 ? -chips[i] : position[i];
+        }
+        Collections.sort(board, new Comparator<Player>() {
+            @Override
+            public int compare(Player a, Player b) {
+                return Integer.compare(rank[index.get(a)], rank[index.get(b)]);
+            }
+        });
+        return board;
+    }
+
+    /**
+     * @return finishing position of the player, 1 for the winner, or 0 if the
+     * player is still in the tournament
+     */
+    public synchronized int getPosition(Player player) {
+        if (left == 1 && position[index.get(player)] == 0) {
+            return 1;
+        }
+        return position[index.get(player)];
+    }
+
+    /**
+     * @return chips of the player after the last game of the player's table
+     */
+    public synchronized int getChips(Player player) {
+        return chips[index.get(player)];
+    }
+
+    /**
+     * @return number of players that are still in the tournament
+     */
+    public synchronized int getPlayersLeft() {
+        return left;
+    }
+
+    /**
+     * @return number of tables that are still in use
+     */
+    public synchronized int getTables() {
+        return tables.size();
+    }
+
+    /**
+     * @return number of games played at all tables
+     */
+    public long getGames() {
+        return games.get();
+    }
+
+    /**
+     * A Match with the players that are moved to it while it plays a game.
+     */
+    private static final class Table {
+
+        final Match match;
+        final ArrayList<Player> incoming = new ArrayList();
+        boolean playing;
+
+        Table(Match match) {
+            this.match = match;
+        }
+
+        /**
+         * @return players at the table after the current game
+         */
+        int size() {
+            return match.getPlayersLeftInMatch().size() + incoming.size();
+        }
+    }
+}
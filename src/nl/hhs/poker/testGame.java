@@ -2,7 +2,9 @@ package nl.hhs.poker;
 
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.Random;
 import java.util.TreeMap;
+import java.util.concurrent.Flow;
 
 /**
  *
@@ -16,7 +18,29 @@ public class testGame {
         players.add(new CallBot());
         players.add(new RandomBot());
         
-        Game game = new Game(players);
+        // print what happens while the game is played
+        GameEventPublisher events = new GameEventPublisher();
+        events.subscribe(new Flow.Subscriber<GameEvent>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(GameEvent event) {
+                System.out.println(event);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                error.printStackTrace();
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        Game game = new Game(players, new Random().nextLong(), events);
         game.dealCommunityCards(5);
         game.bidUntilNoRaise();
         
@@ -32,6 +56,7 @@ public class testGame {
             System.out.println(hand);
         }
         System.out.println("Winner " + game.getWinner());
+        events.close();
         
     }
 
@@ -20,6 +20,8 @@ public class testMatch {
         players.add(new RandomBot());
 
         Match match = new Match(players);
+        OpponentStats stats = new OpponentStats();
+        match.addListener(stats);
         while (match.getPlayersLeftInMatch().size() > 1) {
             System.out.println("New Game " + match.getPlayersLeftInMatch());
 
@@ -28,7 +30,7 @@ public class testMatch {
             printGame(game);
             match.moveDealer();
         }
-
+        System.out.print(stats);
     }
 
     private static void printGame(Game game) {
@@ -0,0 +1,35 @@
+package nl.hhs.poker;
+
+import java.util.ArrayList;
+
+/**
+ * Plays many matches in parallel and prints the results per bot class.
+ * Arguments: number of matches (default 10000), number of threads (default
+ * the number of cores), and "stats" to measure and print the decisions of
+ * the bots, see {@link DecisionStats}.
+ */
+public class testSimulation {
+
+    public static void main(String[] args) throws InterruptedException {
+        long matches = args.length > 0 ? Long.parseLong(args[0]) : 10000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        DecisionStats.setEnabled(args.length > 2 && args[2].equals("stats"));
+
+        ArrayList<Class<? extends Player>> players = new ArrayList();
+        players.add(CallBot.class);
+        players.add(RandomBot.class);
+        players.add(RandomBot.class);
+        players.add(RandomBot.class);
+        players.add(RandomBot.class);
+
+        Simulator simulator = new Simulator(players, threads, 100000);
+        long start = System.nanoTime();
+        simulator.run(matches);
+        long millis = (System.nanoTime() - start) / 1000000;
+        System.out.print(simulator.summary());
+        System.out.println(millis + " ms, " + (1000 * simulator.getMatches() / Math.max(1, millis)) + " matches/s");
+        if (DecisionStats.isEnabled()) {
+            System.out.print(DecisionStats.dump());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package nl.hhs.poker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Plays a tournament of many bots at tables of 6 on all cores and prints the
+ * top of the leaderboard. Arguments: number of players (default 1000),
+ * number of threads (default the number of cores).
+ */
+public class testTournament {
+
+    public static void main(String[] args) throws InterruptedException {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        ArrayList<Player> field = new ArrayList();
+        for (int i = 0; i < players; i++) {
+            field.add(i % 5 == 0 ? new CallBot() : new RandomBot());
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            Tournament tournament = new Tournament(field, 6, pool, System.nanoTime());
+            long start = System.nanoTime();
+            Player winner = tournament.run();
+            long millis = (System.nanoTime() - start) / 1000000;
+            List<Player> leaderboard = tournament.getLeaderboard();
+            for (int i = 0; i < Math.min(10, leaderboard.size()); i++) {
+                Player player = leaderboard.get(i);
+                System.out.println(tournament.getPosition(player) + " " + player);
+            }
+            System.out.println("winner " + winner + ", " + tournament.getGames() + " games in " + millis + " ms");
+        } finally {
+            pool.shutdown();
+        }
+    }
+}